@@ -0,0 +1,109 @@
+package com.lasthotel.cancun.client;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Collects availability checks issued within a short window into one batch request. Identical ranges in a batch
+ * are sent once. A batch holding a single range is sent as a plain check instead.
+ */
+class AvailabilityBatcher implements Disposable {
+    private final Function<List<DateRange>, Mono<List<Boolean>>> batchCall;
+    private final Function<DateRange, Mono<Boolean>> singleCall;
+    private final Predicate<Throwable> splitOnError;
+    private final Disposable subscription;
+    private FluxSink<Pending> pending;
+
+    /**
+     * @param splitOnError errors of a batch call after which the ranges are checked one by one, e.g. when one
+     *                     invalid range makes the server reject the whole batch
+     */
+    AvailabilityBatcher(Function<List<DateRange>, Mono<List<Boolean>>> batchCall,
+                        Function<DateRange, Mono<Boolean>> singleCall,
+                        Predicate<Throwable> splitOnError,
+                        int maxBatchSize,
+                        Duration window) {
+        this.batchCall = batchCall;
+        this.singleCall = singleCall;
+        this.splitOnError = splitOnError;
+        this.subscription = Flux.<Pending>create(sink -> pending = sink)
+                .bufferTimeout(maxBatchSize, window)
+                .flatMap(this::resolve)
+                .subscribe();
+    }
+
+    Mono<Boolean> submit(DateRange range) {
+        return Mono.defer(() -> {
+            final Sinks.One<Boolean> result = Sinks.one();
+            pending.next(new Pending(range, result));
+            return result.asMono();
+        });
+    }
+
+    @Override
+    public void dispose() {
+        subscription.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscription.isDisposed();
+    }
+
+    private Mono<Void> resolve(List<Pending> batch) {
+        final Map<DateRange, List<Sinks.One<Boolean>>> callers = new LinkedHashMap<>();
+        for (Pending request : batch) {
+            callers.computeIfAbsent(request.range, range -> new ArrayList<>()).add(request.result);
+        }
+
+        final List<DateRange> ranges = new ArrayList<>(callers.keySet());
+        if (ranges.size() == 1) {
+            return resolveOne(ranges.get(0), callers.get(ranges.get(0)));
+        }
+
+        return batchCall.apply(ranges)
+                .flatMap(results -> {
+                    for (int i = 0; i < ranges.size(); i++) {
+                        final boolean available = results.get(i);
+                        callers.get(ranges.get(i)).forEach(caller -> caller.tryEmitValue(available));
+                    }
+                    return Mono.<Void>empty();
+                })
+                .onErrorResume(splitOnError, e -> Flux.fromIterable(ranges)
+                        .flatMap(range -> resolveOne(range, callers.get(range)))
+                        .then())
+                .onErrorResume(e -> {
+                    callers.values().forEach(sinks -> sinks.forEach(caller -> caller.tryEmitError(e)));
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> resolveOne(DateRange range, List<Sinks.One<Boolean>> callers) {
+        return singleCall.apply(range)
+                .doOnNext(available -> callers.forEach(caller -> caller.tryEmitValue(available)))
+                .doOnError(e -> callers.forEach(caller -> caller.tryEmitError(e)))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static final class Pending {
+        private final DateRange range;
+        private final Sinks.One<Boolean> result;
+
+        private Pending(DateRange range, Sinks.One<Boolean> result) {
+            this.range = range;
+            this.result = result;
+        }
+    }
+}
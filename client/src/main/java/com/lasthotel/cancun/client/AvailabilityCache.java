@@ -0,0 +1,77 @@
+package com.lasthotel.cancun.client;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of availability answers. Entries stay usable after expiry when they carry an ETag, so that
+ * they can be revalidated with a conditional request instead of fetched again.
+ */
+class AvailabilityCache {
+    static final class Entry {
+        private final boolean available;
+        private final String etag;
+        private final long expiresAt;
+
+        private Entry(boolean available, String etag, long expiresAt) {
+            this.available = available;
+            this.etag = etag;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isAvailable() {
+            return available;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+    }
+
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final Map<DateRange, Entry> entries;
+
+    AvailabilityCache(Duration ttl, int maxEntries, LongSupplier ticker) {
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DateRange, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized Entry get(DateRange range) {
+        return entries.get(range);
+    }
+
+    boolean isFresh(Entry entry) {
+        return ticker.getAsLong() - entry.expiresAt < 0;
+    }
+
+    synchronized void put(DateRange range, boolean available, String etag) {
+        if (ttlNanos > 0) {
+            entries.put(range, new Entry(available, etag, ticker.getAsLong() + ttlNanos));
+        }
+    }
+
+    /**
+     * Drops every entry overlapping the dates, after a write made through this client.
+     */
+    synchronized void invalidate(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            entries.clear();
+        } else {
+            entries.keySet().removeIf(range -> range.overlaps(from, to));
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,322 @@
+package com.lasthotel.cancun.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.netty.channel.ChannelOption;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reactive client for the reservation API.
+ * <p>
+ * Availability answers are cached for a short time. When the server sends an ETag, expired answers are revalidated
+ * with a conditional request. Concurrent availability checks for ranges that are not cached are sent together
+ * through the batch endpoint. Writes made through the client drop the cached answers they may have changed.
+ * <p>
+ * Create one instance per target and share it, then {@link #close()} it to release its connections.
+ */
+public class CancunClient implements AutoCloseable {
+    private static final ParameterizedTypeReference<List<Reservation>> RESERVATION_LIST = new ParameterizedTypeReference<>() {
+    };
+
+    private final WebClient webClient;
+    private final ConnectionProvider connectionProvider;
+    private final AvailabilityCache cache;
+    private final AvailabilityBatcher batcher;
+
+    private CancunClient(Builder builder) {
+        this.connectionProvider = ConnectionProvider.builder("cancun-client")
+                .maxConnections(builder.maxConnections)
+                .pendingAcquireMaxCount(builder.pendingAcquireMaxCount)
+                .pendingAcquireTimeout(builder.pendingAcquireTimeout)
+                // Close idle connections before the server does, and reuse the most recent ones first so that
+                // the surplus after a burst goes idle and gets evicted
+                .maxIdleTime(builder.maxIdleTime)
+                .evictInBackground(builder.maxIdleTime)
+                .lifo()
+                .build();
+
+        final HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) builder.connectTimeout.toMillis())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .responseTimeout(builder.responseTimeout)
+                .keepAlive(true);
+
+        final ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        this.webClient = WebClient.builder()
+                .baseUrl(builder.baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+
+        this.cache = new AvailabilityCache(builder.cacheTtl, builder.cacheMaxEntries, System::nanoTime);
+        this.batcher = new AvailabilityBatcher(this::fetchBatch, range -> fetchOne(range, null),
+                WebClientResponseException.BadRequest.class::isInstance, builder.maxBatchSize, builder.batchWindow);
+    }
+
+    public static Builder builder(String baseUrl) {
+        return new Builder(baseUrl);
+    }
+
+    /**
+     * {@code GET /reservation/all}
+     */
+    public Mono<List<Reservation>> getAvailableReservationIntervals() {
+        return webClient.get()
+                .uri("/reservation/all")
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(RESERVATION_LIST);
+    }
+
+    /**
+     * {@code GET /reservation/user/{userName}}
+     */
+    public Flux<Reservation> getReservationsForUser(String user) {
+        return webClient.get()
+                .uri("/reservation/user/{user}", user)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToFlux(Reservation.class);
+    }
+
+    /**
+     * {@code GET /reservation?from=&to=}, answered from the cache when possible and otherwise batched with the
+     * checks issued at the same time. Fails with {@link WebClientResponseException.BadRequest} for invalid dates.
+     */
+    public Mono<Boolean> isAvailable(LocalDate from, LocalDate to) {
+        final DateRange range = new DateRange(from, to);
+        return Mono.defer(() -> {
+            final AvailabilityCache.Entry cached = cache.get(range);
+            if (cached != null && cache.isFresh(cached)) {
+                return Mono.just(cached.isAvailable());
+            }
+            if (cached != null && cached.getEtag() != null) {
+                return fetchOne(range, cached);
+            }
+            return batcher.submit(range);
+        });
+    }
+
+    /**
+     * {@code POST /reservation/availability}, bypassing the cache. Answers are in the order of the ranges.
+     */
+    public Mono<List<Boolean>> checkAvailability(List<DateRange> ranges) {
+        return fetchBatch(ranges);
+    }
+
+    /**
+     * {@code POST /reservation}. Fails with {@link WebClientResponseException.BadRequest} if the dates are invalid
+     * or already taken.
+     */
+    public Mono<Reservation> makeReservation(Reservation reservation) {
+        return webClient.post()
+                .uri("/reservation")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(reservation)
+                .retrieve()
+                .bodyToMono(Reservation.class)
+                // A rejection also means the cached answers for these dates may be stale
+                .doOnSuccess(saved -> cache.invalidate(reservation.getFrom(), reservation.getTo()))
+                .doOnError(e -> cache.invalidate(reservation.getFrom(), reservation.getTo()));
+    }
+
+    /**
+     * {@code PUT /reservation/{id}}. Empty if there is no such reservation, and fails with
+     * {@link WebClientResponseException.BadRequest} if the new dates are invalid or already taken.
+     */
+    public Mono<Reservation> updateReservation(String id, Reservation reservation) {
+        return webClient.put()
+                .uri("/reservation/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(reservation)
+                .retrieve()
+                .onStatus(status -> status == HttpStatus.NOT_FOUND, response -> Mono.empty())
+                .bodyToMono(Reservation.class)
+                // The previous dates are not known here, so every cached answer may be stale
+                .doOnSuccess(updated -> cache.invalidate(null, null))
+                .doOnError(e -> cache.invalidate(null, null));
+    }
+
+    /**
+     * {@code DELETE /reservation/{id}}. Empty if there is no such reservation.
+     */
+    public Mono<Reservation> deleteReservation(String id) {
+        return webClient.delete()
+                .uri("/reservation/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .onStatus(status -> status == HttpStatus.NOT_FOUND, response -> Mono.empty())
+                .bodyToMono(Reservation.class)
+                .doOnNext(deleted -> cache.invalidate(deleted.getFrom(), deleted.getTo()));
+    }
+
+    @Override
+    public void close() {
+        batcher.dispose();
+        connectionProvider.dispose();
+    }
+
+    private Mono<Boolean> fetchOne(DateRange range, AvailabilityCache.Entry cached) {
+        return webClient.get()
+                .uri(uri -> uri.path("/reservation")
+                        .queryParam("from", range.getFrom())
+                        .queryParam("to", range.getTo())
+                        .build())
+                .accept(MediaType.TEXT_PLAIN)
+                .headers(headers -> {
+                    if (cached != null) {
+                        headers.setIfNoneMatch(cached.getEtag());
+                    }
+                })
+                .exchangeToMono(response -> {
+                    if (cached != null && response.statusCode() == HttpStatus.NOT_MODIFIED) {
+                        cache.put(range, cached.isAvailable(), cached.getEtag());
+                        return response.releaseBody().thenReturn(cached.isAvailable());
+                    }
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(String.class)
+                                .map(body -> Boolean.parseBoolean(body.trim()))
+                                .doOnNext(available -> cache.put(range, available, etag(response)));
+                    }
+                    return response.createException().flatMap(Mono::error);
+                });
+    }
+
+    private Mono<List<Boolean>> fetchBatch(List<DateRange> ranges) {
+        return webClient.post()
+                .uri("/reservation/availability")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("ranges", ranges))
+                .retrieve()
+                .bodyToMono(AvailabilityBatchResponse.class)
+                .map(response -> {
+                    final List<Boolean> available = new ArrayList<>(ranges.size());
+                    for (int i = 0; i < ranges.size(); i++) {
+                        available.add(response.getAvailable()[i]);
+                        cache.put(ranges.get(i), response.getAvailable()[i], null);
+                    }
+                    return available;
+                });
+    }
+
+    private static String etag(ClientResponse response) {
+        return response.headers().asHttpHeaders().getFirst(HttpHeaders.ETAG);
+    }
+
+    static class AvailabilityBatchResponse {
+        private boolean[] available;
+
+        public boolean[] getAvailable() {
+            return available;
+        }
+
+        public void setAvailable(boolean[] available) {
+            this.available = available;
+        }
+    }
+
+    public static final class Builder {
+        private final String baseUrl;
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration responseTimeout = Duration.ofSeconds(3);
+        private int maxConnections = 256;
+        private int pendingAcquireMaxCount = 4096;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+        private Duration maxIdleTime = Duration.ofSeconds(20);
+        private Duration cacheTtl = Duration.ofMillis(500);
+        private int cacheMaxEntries = 10_000;
+        private Duration batchWindow = Duration.ofMillis(2);
+        private int maxBatchSize = 100;
+
+        private Builder(String baseUrl) {
+            this.baseUrl = Objects.requireNonNull(baseUrl, "baseUrl");
+        }
+
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder responseTimeout(Duration responseTimeout) {
+            this.responseTimeout = responseTimeout;
+            return this;
+        }
+
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Requests allowed to wait for a connection when all are busy, and for how long.
+         */
+        public Builder pendingAcquire(int maxCount, Duration timeout) {
+            this.pendingAcquireMaxCount = maxCount;
+            this.pendingAcquireTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Should stay below the server's keep-alive timeout, so the client never reuses a connection being closed.
+         */
+        public Builder maxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+            return this;
+        }
+
+        /**
+         * A zero TTL turns the availability cache off.
+         */
+        public Builder cache(Duration ttl, int maxEntries) {
+            this.cacheTtl = ttl;
+            this.cacheMaxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Availability checks issued within the window are sent as one request of at most {@code maxBatchSize}
+         * ranges. The server accepts up to 100.
+         */
+        public Builder batching(Duration window, int maxBatchSize) {
+            this.batchWindow = window;
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public CancunClient build() {
+            return new CancunClient(this);
+        }
+    }
+}
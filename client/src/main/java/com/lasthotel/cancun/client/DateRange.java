@@ -0,0 +1,58 @@
+package com.lasthotel.cancun.client;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class DateRange {
+    private LocalDate from;
+    private LocalDate to;
+
+    public DateRange() {
+    }
+
+    public DateRange(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public boolean overlaps(LocalDate otherFrom, LocalDate otherTo) {
+        return !from.isAfter(otherTo) && !to.isBefore(otherFrom);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DateRange dateRange = (DateRange) o;
+        return Objects.equals(from, dateRange.from) && Objects.equals(to, dateRange.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "DateRange{" +
+                "from=" + from +
+                ", to=" + to +
+                '}';
+    }
+}
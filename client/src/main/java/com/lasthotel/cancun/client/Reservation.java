@@ -0,0 +1,75 @@
+package com.lasthotel.cancun.client;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class Reservation {
+    private String id;
+    private String user;
+    private LocalDate from;
+    private LocalDate to;
+
+    public Reservation() {
+    }
+
+    public Reservation(String user, LocalDate from, LocalDate to) {
+        this.user = user;
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Reservation that = (Reservation) o;
+        return Objects.equals(id, that.id) && Objects.equals(user, that.user) && Objects.equals(from, that.from) && Objects.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, user, from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{" +
+                "id='" + id + '\'' +
+                ", user='" + user + '\'' +
+                ", from=" + from +
+                ", to=" + to +
+                '}';
+    }
+}
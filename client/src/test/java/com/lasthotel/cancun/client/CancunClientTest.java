@@ -0,0 +1,166 @@
+package com.lasthotel.cancun.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CancunClientTest {
+    private static final LocalDate DAY = LocalDate.of(2021, 7, 10);
+    private static final Pattern RANGE = Pattern.compile("\"from\":\"([0-9-]+)\",\"to\":\"([0-9-]+)\"");
+
+    private final AtomicInteger singleChecks = new AtomicInteger();
+    private final AtomicInteger revalidations = new AtomicInteger();
+    private final AtomicInteger batchChecks = new AtomicInteger();
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+
+    private DisposableServer server;
+    private CancunClient client;
+
+    @BeforeEach
+    public void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/reservation", this::singleCheck)
+                        .post("/reservation/availability", this::batchCheck)
+                        .post("/reservation", (request, response) -> response
+                                .header("Content-Type", "application/json")
+                                .sendString(request.receive().aggregate().asString()
+                                        .map(body -> body.replace("\"id\":null", "\"id\":\"42\"")))))
+                .bindNow();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.disposeNow();
+    }
+
+    @Test
+    public void when_checksAreConcurrent_then_oneBatchRequestIsSent() {
+        client = client(Duration.ofSeconds(10));
+
+        final Flux<Boolean> checks = Flux.range(0, 10)
+                .flatMap(i -> client.isAvailable(DAY.plusDays(i), DAY.plusDays(i + 1)));
+
+        StepVerifier.create(checks.collectList())
+                .assertNext(results -> assertEquals(10, results.size()))
+                .verifyComplete();
+        assertEquals(1, batchChecks.get());
+        assertEquals(10, lastBatchSize.get());
+        assertEquals(0, singleChecks.get());
+    }
+
+    @Test
+    public void when_answerIsCached_then_noRequestIsSent() {
+        client = client(Duration.ofSeconds(10));
+
+        StepVerifier.create(client.isAvailable(DAY, DAY.plusDays(1)).then(client.isAvailable(DAY, DAY.plusDays(1))))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(1, singleChecks.get());
+    }
+
+    @Test
+    public void when_cachedAnswerExpires_then_itIsRevalidatedWithEtag() {
+        client = client(Duration.ofMillis(50));
+
+        StepVerifier.create(client.isAvailable(DAY, DAY.plusDays(1))
+                        .delayElement(Duration.ofMillis(100))
+                        .then(client.isAvailable(DAY, DAY.plusDays(1))))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(2, singleChecks.get());
+        assertEquals(1, revalidations.get());
+    }
+
+    @Test
+    public void when_reservationIsMade_then_overlappingAnswersAreDropped() {
+        client = client(Duration.ofSeconds(10));
+
+        StepVerifier.create(client.isAvailable(DAY, DAY.plusDays(1))
+                        .then(client.makeReservation(new Reservation("alice", DAY.plusDays(1), DAY.plusDays(2))))
+                        .map(Reservation::getId)
+                        .flatMap(id -> client.isAvailable(DAY, DAY.plusDays(1)).thenReturn(id)))
+                .expectNext("42")
+                .verifyComplete();
+        assertEquals(2, singleChecks.get());
+    }
+
+    @Test
+    public void when_batchIsRejected_then_rangesAreCheckedOneByOne() {
+        client = client(Duration.ofSeconds(10));
+
+        final Mono<Boolean> valid = client.isAvailable(DAY, DAY.plusDays(1));
+        final Mono<Boolean> invalid = client.isAvailable(DAY.plusDays(1), DAY);
+
+        StepVerifier.create(Flux.merge(valid, invalid.onErrorResume(WebClientResponseException.BadRequest.class, e -> Mono.just(false))).collectList())
+                .assertNext(results -> assertEquals(List.of(false, true), results.stream().sorted().collect(Collectors.toList())))
+                .verifyComplete();
+        assertEquals(1, batchChecks.get());
+        assertEquals(2, singleChecks.get());
+    }
+
+    private CancunClient client(Duration cacheTtl) {
+        return CancunClient.builder("http://localhost:" + server.port())
+                .cache(cacheTtl, 100)
+                .batching(Duration.ofMillis(50), 100)
+                .build();
+    }
+
+    private Mono<Void> singleCheck(HttpServerRequest request, HttpServerResponse response) {
+        singleChecks.incrementAndGet();
+        final String query = request.uri().substring(request.uri().indexOf('?') + 1);
+        if (!isValid(query.replaceAll(".*from=([0-9-]+).*", "$1"), query.replaceAll(".*to=([0-9-]+).*", "$1"))) {
+            return response.status(400).send();
+        }
+
+        if ("\"v1\"".equals(request.requestHeaders().get("If-None-Match"))) {
+            revalidations.incrementAndGet();
+            return response.status(304).send();
+        }
+        return response.header("ETag", "\"v1\"").sendString(Mono.just("true")).then();
+    }
+
+    private Mono<Void> batchCheck(HttpServerRequest request, HttpServerResponse response) {
+        batchChecks.incrementAndGet();
+        return request.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+            final Matcher matcher = RANGE.matcher(body);
+            final StringBuilder available = new StringBuilder();
+            int count = 0;
+            while (matcher.find()) {
+                if (!isValid(matcher.group(1), matcher.group(2))) {
+                    return response.status(400).send().then();
+                }
+                available.append(count++ == 0 ? "" : ",").append(count % 2 == 0);
+            }
+            lastBatchSize.set(count);
+            return response.header("Content-Type", "application/json")
+                    .sendString(Mono.just("{\"available\":[" + available + "]}"))
+                    .then();
+        });
+    }
+
+    private static boolean isValid(String from, String to) {
+        return !LocalDate.parse(to).isBefore(LocalDate.parse(from));
+    }
+}
@@ -0,0 +1,23 @@
+package com.lasthotel.cancun.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "cancun.bulkhead", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(BulkheadProperties.class)
+public class BulkheadConfig {
+
+    @Bean
+    public Bulkheads bulkheads(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        return new Bulkheads(properties, meterRegistry);
+    }
+
+    @Bean
+    public BulkheadWebFilter bulkheadWebFilter(Bulkheads bulkheads, BulkheadProperties properties) {
+        return new BulkheadWebFilter(bulkheads, properties);
+    }
+}
@@ -0,0 +1,14 @@
+package com.lasthotel.cancun.bulkhead;
+
+public class BulkheadFullException extends RuntimeException {
+    private final RequestClass requestClass;
+
+    public BulkheadFullException(RequestClass requestClass, String reason) {
+        super("Bulkhead " + requestClass + " rejected the request: " + reason);
+        this.requestClass = requestClass;
+    }
+
+    public RequestClass getRequestClass() {
+        return requestClass;
+    }
+}
@@ -0,0 +1,142 @@
+package com.lasthotel.cancun.bulkhead;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "cancun.bulkhead")
+public class BulkheadProperties {
+    private boolean enabled = true;
+
+    /**
+     * Requests in flight across all bulkheads. Once reached, freed capacity goes to the highest priority queue.
+     */
+    private int maxConcurrent = 128;
+
+    private Limits write = new Limits(64, 512);
+
+    private Limits read = new Limits(96, 256);
+
+    private Limits admin = new Limits(4, 16);
+
+    /**
+     * Paths handled by the admin bulkhead. Mutations on any other path go to the write bulkhead, the rest to reads.
+     */
+    private List<String> adminPaths = List.of("/actuator/**", "/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html");
+
+    /**
+     * Paths that bypass the bulkheads, so that probes keep answering under load.
+     */
+    private List<String> excludedPaths = List.of("/actuator/health/**");
+
+    public Limits limits(RequestClass requestClass) {
+        switch (requestClass) {
+            case WRITE:
+                return write;
+            case READ:
+                return read;
+            default:
+                return admin;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public Limits getWrite() {
+        return write;
+    }
+
+    public void setWrite(Limits write) {
+        this.write = write;
+    }
+
+    public Limits getRead() {
+        return read;
+    }
+
+    public void setRead(Limits read) {
+        this.read = read;
+    }
+
+    public Limits getAdmin() {
+        return admin;
+    }
+
+    public void setAdmin(Limits admin) {
+        this.admin = admin;
+    }
+
+    public List<String> getAdminPaths() {
+        return adminPaths;
+    }
+
+    public void setAdminPaths(List<String> adminPaths) {
+        this.adminPaths = adminPaths;
+    }
+
+    public List<String> getExcludedPaths() {
+        return excludedPaths;
+    }
+
+    public void setExcludedPaths(List<String> excludedPaths) {
+        this.excludedPaths = excludedPaths;
+    }
+
+    public static class Limits {
+        private int maxConcurrent;
+
+        /**
+         * Requests allowed to wait for a slot. Beyond that they are rejected with 503.
+         */
+        private int maxQueued;
+
+        private Duration maxWait = Duration.ofSeconds(2);
+
+        public Limits() {
+        }
+
+        public Limits(int maxConcurrent, int maxQueued) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+}
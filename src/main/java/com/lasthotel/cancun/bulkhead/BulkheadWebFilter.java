@@ -0,0 +1,84 @@
+package com.lasthotel.cancun.bulkhead;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runs every request in the bulkhead of its class. Requests that cannot get a slot are answered with 503.
+ */
+public class BulkheadWebFilter implements WebFilter, Ordered {
+    private static final String AVAILABILITY_BATCH_PATH = "/reservation/availability";
+
+    private final Bulkheads bulkheads;
+    private final List<PathPattern> adminPaths;
+    private final List<PathPattern> excludedPaths;
+
+    public BulkheadWebFilter(Bulkheads bulkheads, BulkheadProperties properties) {
+        this.bulkheads = bulkheads;
+        this.adminPaths = parse(properties.getAdminPaths());
+        this.excludedPaths = parse(properties.getExcludedPaths());
+    }
+
+    @Override
+    public int getOrder() {
+        // Right after tracing, so that spans include the time spent waiting for a slot
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final ServerHttpRequest request = exchange.getRequest();
+        final PathContainer path = request.getPath().pathWithinApplication();
+        if (matches(excludedPaths, path)) {
+            return chain.filter(exchange);
+        }
+
+        return bulkheads.execute(classify(request.getMethod(), path), () -> chain.filter(exchange))
+                .onErrorResume(BulkheadFullException.class, e -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                    exchange.getResponse().getHeaders().set("Retry-After", "1");
+                    return exchange.getResponse().setComplete();
+                });
+    }
+
+    RequestClass classify(HttpMethod method, PathContainer path) {
+        if (matches(adminPaths, path)) {
+            return RequestClass.ADMIN;
+        }
+
+        // The batch availability check is a POST, but only reads
+        if (method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS
+                || AVAILABILITY_BATCH_PATH.equals(path.value())) {
+            return RequestClass.READ;
+        }
+
+        return RequestClass.WRITE;
+    }
+
+    private static boolean matches(List<PathPattern> patterns, PathContainer path) {
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathPattern> parse(List<String> patterns) {
+        return patterns.stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .collect(Collectors.toList());
+    }
+}
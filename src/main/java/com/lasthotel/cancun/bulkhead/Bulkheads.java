@@ -0,0 +1,267 @@
+package com.lasthotel.cancun.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Admission control with one compartment per {@link RequestClass}.
+ * <p>
+ * Each compartment has its own in-flight limit and wait queue, so a flood of one kind of request can only exhaust its
+ * own compartment. A global limit caps the total; when it is the one holding requests back, freed slots go to the
+ * queues in priority order, writes first. The work itself is non-blocking and stays on the thread it runs on; the
+ * isolation comes from the limits, not from separate threads.
+ */
+public class Bulkheads {
+    private static final String SLOT_KEY = Slot.class.getName();
+
+    private final Object lock = new Object();
+    private final int maxConcurrent;
+    private final Map<RequestClass, Compartment> compartments = new EnumMap<>(RequestClass.class);
+    private int inFlight;
+
+    public Bulkheads(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        this.maxConcurrent = properties.getMaxConcurrent();
+        for (RequestClass requestClass : RequestClass.values()) {
+            compartments.put(requestClass, new Compartment(requestClass, properties.limits(requestClass), meterRegistry));
+        }
+    }
+
+    /**
+     * Runs the work once the request class has a free slot. Fails with {@link BulkheadFullException} if the queue is
+     * full or the wait is too long. The work finds its {@link Slot} with {@link #currentSlot}.
+     */
+    public <T> Mono<T> execute(RequestClass requestClass, Supplier<Mono<T>> work) {
+        final Compartment compartment = compartments.get(requestClass);
+        return acquire(compartment)
+                .flatMap(permit -> {
+                    final RequestSlot slot = new RequestSlot(compartment, permit);
+                    return Mono.defer(work)
+                            .doFinally(signal -> slot.finish())
+                            .contextWrite(context -> context.put(SLOT_KEY, slot));
+                });
+    }
+
+    /**
+     * Slot of the request whose work runs with this context, if it runs in a bulkhead.
+     */
+    public static Optional<Slot> currentSlot(ContextView context) {
+        return context.getOrEmpty(SLOT_KEY);
+    }
+
+    public int getQueued(RequestClass requestClass) {
+        synchronized (lock) {
+            return compartments.get(requestClass).queue.size();
+        }
+    }
+
+    public int getInFlight(RequestClass requestClass) {
+        synchronized (lock) {
+            return compartments.get(requestClass).inFlight;
+        }
+    }
+
+    private Mono<Permit> acquire(Compartment compartment) {
+        return Mono.<Permit>create(sink -> {
+                    final Waiter waiter = new Waiter(sink, System.nanoTime());
+                    Permit granted = null;
+                    synchronized (lock) {
+                        if (compartment.queue.isEmpty() && canAdmit(compartment)) {
+                            granted = admit(compartment);
+                        } else if (compartment.queue.size() < compartment.limits.getMaxQueued()) {
+                            compartment.queue.add(waiter);
+                        } else {
+                            compartment.rejectedFull.increment();
+                            sink.error(new BulkheadFullException(compartment.requestClass, "queue full"));
+                            return;
+                        }
+                    }
+
+                    if (granted != null) {
+                        compartment.wait.record(Duration.ZERO);
+                        sink.success(granted);
+                        return;
+                    }
+
+                    sink.onCancel(() -> {
+                        final Permit leaked;
+                        synchronized (lock) {
+                            compartment.queue.remove(waiter);
+                            leaked = waiter.permit;
+                        }
+                        // Granted right before the cancellation, so nobody else will release it
+                        if (leaked != null) {
+                            leaked.release();
+                        }
+                    });
+                })
+                .timeout(compartment.limits.getMaxWait(), Mono.defer(() -> {
+                    compartment.rejectedTimeout.increment();
+                    return Mono.error(new BulkheadFullException(compartment.requestClass,
+                            "waited longer than " + compartment.limits.getMaxWait()));
+                }));
+    }
+
+    private boolean canAdmit(Compartment compartment) {
+        return inFlight < maxConcurrent && compartment.inFlight < compartment.limits.getMaxConcurrent();
+    }
+
+    private Permit admit(Compartment compartment) {
+        inFlight++;
+        compartment.inFlight++;
+        return new Permit(compartment);
+    }
+
+    private void release(Compartment compartment) {
+        final List<Waiter> granted = new ArrayList<>();
+        synchronized (lock) {
+            inFlight--;
+            compartment.inFlight--;
+
+            for (RequestClass requestClass : RequestClass.values()) {
+                final Compartment candidate = compartments.get(requestClass);
+                while (!candidate.queue.isEmpty() && canAdmit(candidate)) {
+                    final Waiter waiter = candidate.queue.poll();
+                    waiter.permit = admit(candidate);
+                    waiter.compartment = candidate;
+                    granted.add(waiter);
+                }
+            }
+        }
+
+        final long now = System.nanoTime();
+        for (Waiter waiter : granted) {
+            waiter.compartment.wait.record(Duration.ofNanos(now - waiter.enqueuedAt));
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    /**
+     * Lets work that parks its request for a long time give the slot back meanwhile, so that parked requests neither
+     * count against the limits nor time out waiting for slots held by other parked ones.
+     */
+    public interface Slot {
+        void release();
+
+        /**
+         * Takes a slot again, through the queue and with the same wait limit as new requests.
+         */
+        Mono<Void> reacquire();
+    }
+
+    private final class RequestSlot implements Slot {
+        private final Compartment compartment;
+        private final AtomicReference<Permit> permit;
+        private volatile boolean finished;
+
+        private RequestSlot(Compartment compartment, Permit permit) {
+            this.compartment = compartment;
+            this.permit = new AtomicReference<>(permit);
+        }
+
+        @Override
+        public void release() {
+            final Permit held = permit.getAndSet(null);
+            if (held != null) {
+                held.release();
+            }
+        }
+
+        @Override
+        public Mono<Void> reacquire() {
+            return acquire(compartment)
+                    .doOnNext(acquired -> {
+                        if (!permit.compareAndSet(null, acquired)) {
+                            acquired.release();
+                        } else if (finished) {
+                            // The request ended while waiting, so nobody else will release it
+                            release();
+                        }
+                    })
+                    .then();
+        }
+
+        private void finish() {
+            finished = true;
+            release();
+        }
+    }
+
+    private final class Permit {
+        private final Compartment compartment;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Compartment compartment) {
+            this.compartment = compartment;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                Bulkheads.this.release(compartment);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt;
+        private Permit permit;
+        private Compartment compartment;
+
+        private Waiter(MonoSink<Permit> sink, long enqueuedAt) {
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class Compartment {
+        private final RequestClass requestClass;
+        private final BulkheadProperties.Limits limits;
+        private final Deque<Waiter> queue = new ArrayDeque<>();
+        private final Timer wait;
+        private final Counter rejectedFull;
+        private final Counter rejectedTimeout;
+        private int inFlight;
+
+        private Compartment(RequestClass requestClass, BulkheadProperties.Limits limits, MeterRegistry meterRegistry) {
+            final String name = requestClass.name().toLowerCase();
+            this.requestClass = requestClass;
+            this.limits = limits;
+
+            this.wait = Timer.builder("cancun.bulkhead.wait")
+                    .tag("bulkhead", name)
+                    .description("Time requests waited for a slot")
+                    .register(meterRegistry);
+            this.rejectedFull = Counter.builder("cancun.bulkhead.rejected")
+                    .tag("bulkhead", name)
+                    .tag("reason", "queue_full")
+                    .register(meterRegistry);
+            this.rejectedTimeout = Counter.builder("cancun.bulkhead.rejected")
+                    .tag("bulkhead", name)
+                    .tag("reason", "timeout")
+                    .register(meterRegistry);
+            Gauge.builder("cancun.bulkhead.queue.depth", Bulkheads.this, bulkheads -> bulkheads.getQueued(requestClass))
+                    .tag("bulkhead", name)
+                    .register(meterRegistry);
+            Gauge.builder("cancun.bulkhead.in.flight", Bulkheads.this, bulkheads -> bulkheads.getInFlight(requestClass))
+                    .tag("bulkhead", name)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.lasthotel.cancun.bulkhead;
+
+/**
+ * Traffic classes with their own bulkhead, in priority order: when capacity frees up, queued writes are admitted
+ * first, then reads, then admin traffic.
+ */
+public enum RequestClass {
+    WRITE,
+    READ,
+    ADMIN
+}
@@ -0,0 +1,459 @@
+package com.lasthotel.cancun.coherence;
+
+import com.lasthotel.cancun.eventlog.ReservationEventLog;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.services.ReservationChangedEvent;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Dispatches local writes to the {@link InvalidationListener}s, and writes from other nodes read from the change
+ * stream or, without change stream support, from a capped collection.
+ */
+@Component
+@EnableConfigurationProperties(CoherenceProperties.class)
+public class CacheCoherenceBus implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(CacheCoherenceBus.class);
+
+    private static final int NAMESPACE_EXISTS = 48;
+    private static final int CAPPED_POSITION_LOST = 136;
+    private static final int INVALID_RESUME_TOKEN = 260;
+    private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final int UNRECOGNIZED_PIPELINE_STAGE = 40324;
+    private static final int CHANGE_STREAM_REQUIRES_REPLICA_SET = 40573;
+
+    private static final String TYPE_MARKER = "MARKER";
+    private static final String TYPE_CHANGE = "CHANGE";
+
+    private final CoherenceProperties properties;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ObjectProvider<InvalidationListener> listenerProvider;
+    private final ObjectProvider<ReservationEventLog> eventLogProvider;
+    private final String reservationsCollection;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Dates and user of recently seen reservations, so change stream deletes can be mapped back to them
+    private final Map<String, Reservation> knownReservations;
+    // Writes made by this node, until the change stream echoes them back
+    private final Map<String, Long> pendingEchoes;
+    private final Disposable.Swap subscription = Disposables.swap();
+
+    private final Timer lag;
+    private final Counter localEvents;
+    private final Counter remoteEvents;
+    private final Counter resyncs;
+
+    private volatile List<InvalidationListener> listeners;
+    private volatile boolean running;
+    private volatile CoherenceProperties.Mode activeMode;
+    private volatile BsonValue resumeToken;
+    private volatile ObjectId lastSeenId;
+    private volatile boolean resynced;
+
+    @Autowired
+    public CacheCoherenceBus(CoherenceProperties properties,
+                             ReactiveMongoTemplate mongoTemplate,
+                             ObjectProvider<InvalidationListener> listenerProvider,
+                             ObjectProvider<ReservationEventLog> eventLogProvider,
+                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.mongoTemplate = mongoTemplate;
+        this.listenerProvider = listenerProvider;
+        this.eventLogProvider = eventLogProvider;
+        this.reservationsCollection = mongoTemplate.getCollectionName(Reservation.class);
+        this.knownReservations = Collections.synchronizedMap(boundedMap(properties.getMaxKnownReservations()));
+        this.pendingEchoes = Collections.synchronizedMap(boundedMap(properties.getMaxPendingEchoes()));
+
+        this.lag = Timer.builder("cancun.coherence.lag")
+                .description("Time between a write on any node and its invalidation reaching this node")
+                .register(meterRegistry);
+        this.localEvents = Counter.builder("cancun.coherence.events").tag("source", "local").register(meterRegistry);
+        this.remoteEvents = Counter.builder("cancun.coherence.events").tag("source", "remote").register(meterRegistry);
+        this.resyncs = Counter.builder("cancun.coherence.resyncs").register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        running = true;
+        activeMode = properties.getMode() == CoherenceProperties.Mode.CAPPED
+                ? CoherenceProperties.Mode.CAPPED
+                : CoherenceProperties.Mode.CHANGE_STREAM;
+        subscription.update(Mono.defer(() -> activeMode == CoherenceProperties.Mode.CAPPED
+                        ? tailInvalidations().then()
+                        : tailChangeStream().then())
+                .retryWhen(Retry.from(signals -> signals.concatMap(signal -> Mono.delay(onStreamError(signal.failure())))))
+                .repeatWhen(completions -> completions.concatMap(completed -> Mono.delay(properties.getRetryDelay())))
+                .subscribe());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        subscription.dispose();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public CoherenceProperties.Mode getActiveMode() {
+        return activeMode;
+    }
+
+    @EventListener
+    public void onReservationChanged(ReservationChangedEvent event) {
+        final Reservation before = event.getBefore();
+        final Reservation after = event.getAfter();
+        if (after != null) {
+            knownReservations.put(after.getId(), footprint(after));
+        } else if (before != null) {
+            knownReservations.remove(before.getId());
+        }
+        if (running && activeMode == CoherenceProperties.Mode.CHANGE_STREAM) {
+            expectEcho(before, after);
+        }
+
+        final InvalidationEvent invalidation = InvalidationEvent.forLocalChange(before, after, Instant.now());
+        localEvents.increment();
+        dispatch(invalidation);
+
+        if (running && activeMode == CoherenceProperties.Mode.CAPPED) {
+            mongoTemplate.insert(toDocument(invalidation), properties.getCollection())
+                    .subscribe(saved -> {
+                    }, e -> log.warn("Could not publish invalidation {}", invalidation, e));
+        }
+    }
+
+    private Duration onStreamError(Throwable error) {
+        final Integer code = errorCode(error);
+
+        if (activeMode == CoherenceProperties.Mode.CHANGE_STREAM
+                && properties.getMode() == CoherenceProperties.Mode.AUTO
+                && code != null
+                && (code == CHANGE_STREAM_REQUIRES_REPLICA_SET || code == UNRECOGNIZED_PIPELINE_STAGE)) {
+            log.info("Change streams are not supported by this deployment, using capped collection '{}' instead",
+                    properties.getCollection());
+            activeMode = CoherenceProperties.Mode.CAPPED;
+            return Duration.ZERO;
+        }
+
+        if (code != null && (code == INVALID_RESUME_TOKEN
+                || code == CHANGE_STREAM_FATAL_ERROR
+                || code == CHANGE_STREAM_HISTORY_LOST)) {
+            log.warn("Change stream resume token lost, forcing a full resync");
+            resumeToken = null;
+        } else if (code == null || code != CAPPED_POSITION_LOST) {
+            log.warn("Invalidation stream failed, reconnecting in {}", properties.getRetryDelay(), error);
+        }
+
+        return properties.getRetryDelay();
+    }
+
+    private Flux<ChangeStreamEvent<Reservation>> tailChangeStream() {
+        final Mono<Void> bootstrap = resumeToken == null ? fullResync() : Mono.empty();
+
+        return bootstrap
+                .thenMany(Flux.defer(() -> {
+                    final ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                            .returnFullDocumentOnUpdate();
+                    if (resumeToken != null) {
+                        options.resumeAfter(resumeToken);
+                    }
+                    return mongoTemplate.changeStream(reservationsCollection, options.build(), Reservation.class);
+                }))
+                .doOnNext(this::onChangeStreamEvent);
+    }
+
+    private void onChangeStreamEvent(ChangeStreamEvent<Reservation> event) {
+        resumeToken = event.getResumeToken();
+
+        final OperationType operationType = event.getOperationType();
+        if (operationType == OperationType.INVALIDATE
+                || operationType == OperationType.DROP
+                || operationType == OperationType.DROP_DATABASE
+                || operationType == OperationType.RENAME) {
+            // The stream closes after these, reconnecting without a token forces a resync
+            resumeToken = null;
+            return;
+        }
+
+        final String id = idOf(event.getRaw() == null ? null : event.getRaw().getDocumentKey());
+        final Reservation after = operationType == OperationType.DELETE ? null : event.getBody();
+        final Reservation before;
+        if (id == null) {
+            before = null;
+        } else if (after == null) {
+            before = knownReservations.remove(id);
+        } else {
+            before = knownReservations.put(id, footprint(after));
+        }
+
+        if (id != null && isEcho(after == null ? deletedKey(id) : savedKey(id, after))) {
+            return;
+        }
+
+        final Instant publishedAt = event.getTimestamp() == null ? Instant.now() : event.getTimestamp();
+        onRemoteInvalidation(InvalidationEvent.forChange(before, after, publishedAt));
+    }
+
+    private Flux<Document> tailInvalidations() {
+        return ensureCappedCollection()
+                .then(Mono.defer(this::resolveTailStart))
+                .flatMapMany(startAfter -> {
+                    // Tailable cursors die on queries without matches, so tail everything and skip to our position
+                    final AtomicBoolean caughtUp = new AtomicBoolean(false);
+                    return mongoTemplate.tail(new Query(), Document.class, properties.getCollection())
+                            .filter(document -> {
+                                if (caughtUp.get()) {
+                                    return true;
+                                }
+                                if (startAfter.equals(document.getObjectId("_id"))) {
+                                    caughtUp.set(true);
+                                }
+                                return false;
+                            });
+                })
+                .doOnNext(this::onInvalidationDocument);
+    }
+
+    private Mono<Void> ensureCappedCollection() {
+        final String collection = properties.getCollection();
+        return mongoTemplate.collectionExists(collection)
+                .flatMap(exists -> exists
+                        ? Mono.<Void>empty()
+                        : mongoTemplate.createCollection(collection, CollectionOptions.empty()
+                        .capped()
+                        .size(properties.getCappedSizeBytes())
+                        .maxDocuments(properties.getCappedMaxDocuments())).then())
+                .onErrorResume(e -> Integer.valueOf(NAMESPACE_EXISTS).equals(errorCode(e)), e -> Mono.empty());
+    }
+
+    private Mono<ObjectId> resolveTailStart() {
+        final ObjectId lastSeen = lastSeenId;
+        if (lastSeen == null) {
+            return insertMarker();
+        }
+
+        return mongoTemplate.exists(query(where("_id").is(lastSeen)), properties.getCollection())
+                .flatMap(exists -> {
+                    if (exists) {
+                        return Mono.just(lastSeen);
+                    }
+                    log.warn("Position in capped collection '{}' lost, forcing a full resync", properties.getCollection());
+                    return fullResync().then(insertMarker());
+                });
+    }
+
+    private Mono<ObjectId> insertMarker() {
+        final ObjectId id = new ObjectId();
+        final Document marker = new Document("_id", id)
+                .append("type", TYPE_MARKER)
+                .append("origin", nodeId)
+                .append("publishedAt", new Date());
+
+        return mongoTemplate.insert(marker, properties.getCollection())
+                .doOnNext(saved -> lastSeenId = id)
+                .thenReturn(id);
+    }
+
+    private void onInvalidationDocument(Document document) {
+        lastSeenId = document.getObjectId("_id");
+        if (!TYPE_CHANGE.equals(document.getString("type")) || nodeId.equals(document.getString("origin"))) {
+            return;
+        }
+
+        final String from = document.getString("from");
+        final String to = document.getString("to");
+        final List<String> users = document.getList("users", String.class);
+        final Date publishedAt = document.getDate("publishedAt");
+
+        onRemoteInvalidation(new InvalidationEvent(
+                false,
+                from == null ? null : LocalDate.parse(from),
+                to == null ? null : LocalDate.parse(to),
+                users == null ? null : new HashSet<>(users),
+                publishedAt == null ? Instant.now() : publishedAt.toInstant()
+        ));
+    }
+
+    private Document toDocument(InvalidationEvent event) {
+        final Set<String> users = event.getUsers();
+        return new Document("_id", new ObjectId())
+                .append("type", TYPE_CHANGE)
+                .append("origin", nodeId)
+                .append("publishedAt", Date.from(event.getPublishedAt()))
+                .append("from", event.getFrom() == null ? null : event.getFrom().toString())
+                .append("to", event.getTo() == null ? null : event.getTo().toString())
+                .append("users", users == null ? null : List.copyOf(users));
+    }
+
+    private Mono<Void> fullResync() {
+        return latestReservations()
+                .collectMap(Reservation::getId, CacheCoherenceBus::footprint)
+                .doOnNext(reservations -> {
+                    knownReservations.clear();
+                    knownReservations.putAll(reservations);
+                    resynced = true;
+                    resyncs.increment();
+                    dispatch(InvalidationEvent.fullResync(Instant.now()));
+                })
+                .then();
+    }
+
+    private Flux<Reservation> latestReservations() {
+        // Only the latest reservations are kept; deletes of older ones invalidate everything
+        final int max = properties.getMaxKnownReservations();
+
+        // On startup the event log already holds them, recovered from its snapshot and tail
+        final ReservationEventLog eventLog = resynced ? null : eventLogProvider.getIfAvailable();
+        if (eventLog != null && !eventLog.isEmpty()) {
+            return Flux.fromStream(() -> eventLog.getState().values().stream()
+                    .sorted(Comparator.comparing(Reservation::getTo).reversed())
+                    .limit(max));
+        }
+
+        final Query latest = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "to"))
+                .limit(max);
+        latest.fields().include("user", "from", "to");
+        return mongoTemplate.find(latest, Reservation.class, reservationsCollection);
+    }
+
+    /**
+     * Updates are written as a delete followed by an insert, so they are echoed as both.
+     */
+    private void expectEcho(Reservation before, Reservation after) {
+        final long deadline = System.nanoTime() + properties.getEchoWindow().toNanos();
+        if (before != null && before.getId() != null) {
+            pendingEchoes.put(deletedKey(before.getId()), deadline);
+        }
+        if (after != null && after.getId() != null) {
+            pendingEchoes.put(savedKey(after.getId(), after), deadline);
+        }
+    }
+
+    private boolean isEcho(String key) {
+        final Long deadline = pendingEchoes.remove(key);
+        return deadline != null && deadline - System.nanoTime() > 0;
+    }
+
+    private void onRemoteInvalidation(InvalidationEvent event) {
+        remoteEvents.increment();
+        lag.record(Duration.between(event.getPublishedAt(), Instant.now()));
+        dispatch(event);
+    }
+
+    private void dispatch(InvalidationEvent event) {
+        for (InvalidationListener listener : listeners()) {
+            try {
+                listener.onInvalidation(event);
+            } catch (RuntimeException e) {
+                log.warn("Invalidation listener {} failed on {}", listener, event, e);
+            }
+        }
+    }
+
+    private List<InvalidationListener> listeners() {
+        List<InvalidationListener> current = listeners;
+        if (current == null) {
+            current = listenerProvider.orderedStream().collect(Collectors.toUnmodifiableList());
+            listeners = current;
+        }
+        return current;
+    }
+
+    private static String deletedKey(String id) {
+        return "deleted:" + id;
+    }
+
+    private static String savedKey(String id, Reservation reservation) {
+        return "saved:" + id + ":" + reservation.getUser() + ":" + reservation.getFrom() + ":" + reservation.getTo();
+    }
+
+    private static Reservation footprint(Reservation reservation) {
+        return new Reservation(reservation.getUser(), reservation.getFrom(), reservation.getTo());
+    }
+
+    private static <V> Map<String, V> boundedMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        if (documentKey == null || !documentKey.containsKey("_id")) {
+            return null;
+        }
+
+        final BsonValue id = documentKey.get("_id");
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        if (id.isString()) {
+            return id.asString().getValue();
+        }
+        return id.toString();
+    }
+
+    private static Integer errorCode(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException) {
+                return ((MongoException) cause).getCode();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,116 @@
+package com.lasthotel.cancun.coherence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "cancun.coherence")
+public class CoherenceProperties {
+    public enum Mode {
+        /**
+         * Use the change stream when the deployment supports it, the capped collection otherwise.
+         */
+        AUTO,
+        CHANGE_STREAM,
+        CAPPED
+    }
+
+    private boolean enabled = true;
+
+    private Mode mode = Mode.AUTO;
+
+    /**
+     * Capped collection used to exchange invalidations when change streams are unavailable.
+     */
+    private String collection = "invalidations";
+
+    private long cappedSizeBytes = 16 * 1024 * 1024;
+
+    private long cappedMaxDocuments = 100_000;
+
+    private Duration retryDelay = Duration.ofSeconds(1);
+
+    /**
+     * Reservations whose dates and user are remembered to resolve change stream deletes.
+     */
+    private int maxKnownReservations = 100_000;
+
+    /**
+     * How long a local write waits for its change stream echo, which is then not dispatched again.
+     */
+    private Duration echoWindow = Duration.ofSeconds(30);
+
+    private int maxPendingEchoes = 10_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    public long getCappedSizeBytes() {
+        return cappedSizeBytes;
+    }
+
+    public void setCappedSizeBytes(long cappedSizeBytes) {
+        this.cappedSizeBytes = cappedSizeBytes;
+    }
+
+    public long getCappedMaxDocuments() {
+        return cappedMaxDocuments;
+    }
+
+    public void setCappedMaxDocuments(long cappedMaxDocuments) {
+        this.cappedMaxDocuments = cappedMaxDocuments;
+    }
+
+    public Duration getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(Duration retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public int getMaxKnownReservations() {
+        return maxKnownReservations;
+    }
+
+    public void setMaxKnownReservations(int maxKnownReservations) {
+        this.maxKnownReservations = maxKnownReservations;
+    }
+
+    public Duration getEchoWindow() {
+        return echoWindow;
+    }
+
+    public void setEchoWindow(Duration echoWindow) {
+        this.echoWindow = echoWindow;
+    }
+
+    public int getMaxPendingEchoes() {
+        return maxPendingEchoes;
+    }
+
+    public void setMaxPendingEchoes(int maxPendingEchoes) {
+        this.maxPendingEchoes = maxPendingEchoes;
+    }
+}
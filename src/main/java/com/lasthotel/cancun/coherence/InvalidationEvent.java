@@ -0,0 +1,116 @@
+package com.lasthotel.cancun.coherence;
+
+import com.lasthotel.cancun.models.Reservation;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Dates and users whose cached data became stale. {@code null} dates or users mean all of them.
+ */
+public class InvalidationEvent {
+    private final boolean fullResync;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Set<String> users;
+    private final Instant publishedAt;
+    private final boolean local;
+
+    public InvalidationEvent(boolean fullResync, LocalDate from, LocalDate to, Set<String> users, Instant publishedAt) {
+        this(fullResync, from, to, users, publishedAt, false);
+    }
+
+    private InvalidationEvent(boolean fullResync, LocalDate from, LocalDate to, Set<String> users, Instant publishedAt, boolean local) {
+        this.fullResync = fullResync;
+        this.from = from;
+        this.to = to;
+        this.users = users == null ? null : Collections.unmodifiableSet(users);
+        this.publishedAt = publishedAt;
+        this.local = local;
+    }
+
+    public static InvalidationEvent fullResync(Instant publishedAt) {
+        return new InvalidationEvent(true, null, null, null, publishedAt);
+    }
+
+    public static InvalidationEvent forChange(Reservation before, Reservation after, Instant publishedAt) {
+        if (before == null && after == null) {
+            return new InvalidationEvent(false, null, null, null, publishedAt);
+        }
+
+        LocalDate from = null;
+        LocalDate to = null;
+        final Set<String> users = new HashSet<>();
+        for (Reservation reservation : new Reservation[]{before, after}) {
+            if (reservation == null) {
+                continue;
+            }
+            if (reservation.getUser() != null) {
+                users.add(reservation.getUser());
+            }
+            if (reservation.getFrom() != null && (from == null || reservation.getFrom().isBefore(from))) {
+                from = reservation.getFrom();
+            }
+            if (reservation.getTo() != null && (to == null || reservation.getTo().isAfter(to))) {
+                to = reservation.getTo();
+            }
+        }
+
+        if (from == null || to == null) {
+            return new InvalidationEvent(false, null, null, users, publishedAt);
+        }
+        return new InvalidationEvent(false, from, to, users, publishedAt);
+    }
+
+    public static InvalidationEvent forLocalChange(Reservation before, Reservation after, Instant publishedAt) {
+        final InvalidationEvent event = forChange(before, after, publishedAt);
+        return new InvalidationEvent(false, event.from, event.to, event.users, publishedAt, true);
+    }
+
+    public boolean isFullResync() {
+        return fullResync;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public Set<String> getUsers() {
+        return users;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
+    public boolean affectsDates(LocalDate from, LocalDate to) {
+        return fullResync || this.from == null || (!this.from.isAfter(to) && !this.to.isBefore(from));
+    }
+
+    public boolean affectsUser(String user) {
+        return fullResync || users == null || users.contains(user);
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationEvent{" +
+                "fullResync=" + fullResync +
+                ", from=" + from +
+                ", to=" + to +
+                ", users=" + users +
+                ", publishedAt=" + publishedAt +
+                ", local=" + local +
+                '}';
+    }
+}
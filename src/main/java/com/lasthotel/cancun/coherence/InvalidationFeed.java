@@ -0,0 +1,20 @@
+package com.lasthotel.cancun.coherence;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+@Component
+public class InvalidationFeed implements InvalidationListener {
+    private final Sinks.Many<InvalidationEvent> sink = Sinks.many().multicast().directBestEffort();
+
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+        // Invalidations arrive from several threads, so retry when another emission is in progress
+        sink.emitNext(event, (signalType, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
+    public Flux<InvalidationEvent> events() {
+        return sink.asFlux();
+    }
+}
@@ -0,0 +1,5 @@
+package com.lasthotel.cancun.coherence;
+
+public interface InvalidationListener {
+    void onInvalidation(InvalidationEvent event);
+}
@@ -1,5 +1,10 @@
 package com.lasthotel.cancun.controllers;
 
+import com.lasthotel.cancun.dropmode.BookingWindowFullException;
+import com.lasthotel.cancun.dropmode.BookingWindowGate;
+import com.lasthotel.cancun.models.AvailabilityBatchRequest;
+import com.lasthotel.cancun.models.AvailabilityBatchResponse;
+import com.lasthotel.cancun.models.AvailabilityQuery;
 import com.lasthotel.cancun.models.Reservation;
 import com.lasthotel.cancun.services.ReservationService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -8,27 +13,32 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
-import java.time.Clock;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @RestController
 @RequestMapping("/reservation")
 @Tag(name = "Reservations", description = "Check reservation dates and maintain reservations for the hotel")
 public class ReservationController {
+    private static final int MAX_BATCH_RANGES = 100;
+
     private final ReservationService reservationService;
-    private final Clock clock;
+    private final ReservationDateValidator dateValidator;
+    private final BookingWindowGate bookingWindowGate;
 
     @Autowired
-    public ReservationController(ReservationService reservationService, Clock clock) {
+    public ReservationController(ReservationService reservationService,
+                                 ReservationDateValidator dateValidator,
+                                 BookingWindowGate bookingWindowGate) {
         this.reservationService = reservationService;
-        this.clock = clock;
+        this.dateValidator = dateValidator;
+        this.bookingWindowGate = bookingWindowGate;
     }
 
 
@@ -66,9 +76,30 @@ public class ReservationController {
                 .map(isTaken -> ResponseEntity.ok(isTaken ? "false" : "true"));
     }
 
+    @Operation(summary = "Check several date intervals at once, with the occupancy of every day they cover")
+    @ApiResponse(responseCode = "200", description = "Per-day occupancy from the earliest requested date, and availability of each interval in request order")
+    @ApiResponse(responseCode = "400", description = "No intervals, too many intervals or an invalid date range provided", content = @Content)
+    @PostMapping(path = "/availability", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<AvailabilityBatchResponse>> checkAvailability(@RequestBody AvailabilityBatchRequest request) {
+        final List<AvailabilityQuery> ranges = request.getRanges();
+        if (ranges == null || ranges.isEmpty() || ranges.size() > MAX_BATCH_RANGES) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        for (AvailabilityQuery range : ranges) {
+            if (range == null || areDatesInvalid(range.getFrom(), range.getTo())) {
+                return Mono.just(ResponseEntity.badRequest().build());
+            }
+        }
+
+        return reservationService.getAvailability(ranges)
+                .map(ResponseEntity::ok);
+    }
+
     @Operation(summary = "Create a new reservation")
     @ApiResponse(responseCode = "200", description = "Reservation created")
     @ApiResponse(responseCode = "400", description = "Invalid dates or malformed reservation provided", content = @Content)
+    @ApiResponse(responseCode = "503", description = "Too many bookings held for the day that opened at midnight", content = @Content)
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
     public Mono<ResponseEntity<Reservation>> createReservation(@RequestBody Reservation reservation) {
         if (areDatesInvalid(reservation.getFrom(), reservation.getTo())) {
@@ -79,22 +110,27 @@ public class ReservationController {
             return Mono.just(ResponseEntity.badRequest().build());
         }
 
-        return reservationService.makeReservation(reservation)
+        return bookingWindowGate.submit(reservation.getFrom(), reservation.getTo(),
+                        () -> reservationService.makeReservation(reservation))
                 .map(ResponseEntity::ok)
-                .defaultIfEmpty(ResponseEntity.badRequest().build());
+                .defaultIfEmpty(ResponseEntity.badRequest().build())
+                .onErrorResume(BookingWindowFullException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()));
     }
 
     @Operation(summary = "Update an existing reservation")
     @ApiResponse(responseCode = "200", description = "Reservation updated")
     @ApiResponse(responseCode = "400", description = "Invalid dates or malformed reservation provided")
     @ApiResponse(responseCode = "404", description = "Reservation not found", content = @Content)
+    @ApiResponse(responseCode = "503", description = "Too many bookings held for the day that opened at midnight", content = @Content)
     @PutMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
     public Mono<ResponseEntity<Reservation>> updateReservation(@PathVariable String id, @RequestBody Reservation reservation) {
         if (areDatesInvalid(reservation.getFrom(), reservation.getTo())) {
             return Mono.just(ResponseEntity.badRequest().build());
         }
 
-        return reservationService.updateReservation(id, reservation)
+        return bookingWindowGate.submit(reservation.getFrom(), reservation.getTo(),
+                        () -> reservationService.updateReservation(id, reservation))
                 .map(updatedReservation -> {
                     if (reservation.getFrom().equals(updatedReservation.getFrom())
                             && reservation.getTo().equals(updatedReservation.getTo())) {
@@ -103,7 +139,9 @@ public class ReservationController {
                         return ResponseEntity.badRequest().body(updatedReservation);
                     }
                 })
-                .defaultIfEmpty(ResponseEntity.notFound().build());
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(BookingWindowFullException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()));
     }
 
     @Operation(summary = "Delete an existing reservation")
@@ -117,11 +155,7 @@ public class ReservationController {
     }
 
     private boolean areDatesInvalid(LocalDate from, LocalDate to) {
-        return (from == null || to == null)
-                || to.isBefore(from)
-                || to.isAfter(LocalDate.now(clock).plusDays(30))
-                || from.isBefore(LocalDate.now(clock).plusDays(1))
-                || ChronoUnit.DAYS.between(from, to) > 2;
+        return dateValidator.areDatesInvalid(from, to);
     }
 
 }
@@ -0,0 +1,30 @@
+package com.lasthotel.cancun.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Booking rules shared by every transport: stays of at most 3 days, starting tomorrow at the earliest and ending
+ * no later than 30 days from today.
+ */
+@Component
+public class ReservationDateValidator {
+    private final Clock clock;
+
+    @Autowired
+    public ReservationDateValidator(Clock clock) {
+        this.clock = clock;
+    }
+
+    public boolean areDatesInvalid(LocalDate from, LocalDate to) {
+        return (from == null || to == null)
+                || to.isBefore(from)
+                || to.isAfter(LocalDate.now(clock).plusDays(30))
+                || from.isBefore(LocalDate.now(clock).plusDays(1))
+                || ChronoUnit.DAYS.between(from, to) > 2;
+    }
+}
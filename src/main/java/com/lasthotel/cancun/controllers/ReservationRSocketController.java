@@ -0,0 +1,96 @@
+package com.lasthotel.cancun.controllers;
+
+import com.lasthotel.cancun.coherence.InvalidationFeed;
+import com.lasthotel.cancun.dropmode.BookingWindowGate;
+import com.lasthotel.cancun.models.AvailabilityQuery;
+import com.lasthotel.cancun.models.AvailabilityUpdate;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.services.ReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * RSocket routes for partners that check availability at high frequency. They accept the compact binary payloads
+ * as well as JSON or CBOR, depending on the data MIME type chosen when the connection is set up.
+ */
+@Controller
+public class ReservationRSocketController {
+    private static final Logger log = LoggerFactory.getLogger(ReservationRSocketController.class);
+
+    private final ReservationService reservationService;
+    private final ReservationDateValidator dateValidator;
+    private final InvalidationFeed invalidationFeed;
+    private final BookingWindowGate bookingWindowGate;
+
+    @Autowired
+    public ReservationRSocketController(ReservationService reservationService,
+                                        ReservationDateValidator dateValidator,
+                                        InvalidationFeed invalidationFeed,
+                                        BookingWindowGate bookingWindowGate) {
+        this.reservationService = reservationService;
+        this.dateValidator = dateValidator;
+        this.invalidationFeed = invalidationFeed;
+        this.bookingWindowGate = bookingWindowGate;
+    }
+
+    /**
+     * Request/response equivalent of {@code GET /reservation?from=&to=}.
+     */
+    @MessageMapping("reservation.availability")
+    public Mono<AvailabilityUpdate> checkAvailability(AvailabilityQuery query) {
+        if (dateValidator.areDatesInvalid(query.getFrom(), query.getTo())) {
+            return Mono.error(new IllegalArgumentException("Invalid date range " + query));
+        }
+
+        return reservationService.isReservationTaken(query.getFrom(), query.getTo())
+                .map(isTaken -> new AvailabilityUpdate(query.getFrom(), query.getTo(), !isTaken));
+    }
+
+    /**
+     * Emits the current availability of the range, then a new value every time it changes on any node.
+     */
+    @MessageMapping("reservation.availability.stream")
+    public Flux<AvailabilityUpdate> streamAvailability(AvailabilityQuery query) {
+        if (dateValidator.areDatesInvalid(query.getFrom(), query.getTo())) {
+            return Flux.error(new IllegalArgumentException("Invalid date range " + query));
+        }
+
+        // Merge subscribes to the feed right away, so no change can slip in after the first check
+        final Flux<Boolean> changes = invalidationFeed.events()
+                .filter(event -> event.affectsDates(query.getFrom(), query.getTo()))
+                .map(event -> Boolean.TRUE);
+
+        return Flux.merge(Mono.just(Boolean.TRUE), changes)
+                .onBackpressureLatest()
+                .concatMap(changed -> checkAvailability(query), 1)
+                .distinctUntilChanged(AvailabilityUpdate::isAvailable);
+    }
+
+    /**
+     * Fire-and-forget equivalent of {@code POST /reservation}. Partners learn the outcome from the availability
+     * stream or by listing the user's reservations.
+     */
+    @MessageMapping("reservation.hold")
+    public Mono<Void> hold(Reservation reservation) {
+        if (dateValidator.areDatesInvalid(reservation.getFrom(), reservation.getTo())
+                || reservation.getUser() == null
+                || reservation.getUser().isEmpty()) {
+            log.debug("Ignoring invalid hold {}", reservation);
+            return Mono.empty();
+        }
+
+        return bookingWindowGate.submit(reservation.getFrom(), reservation.getTo(),
+                        () -> reservationService.makeReservation(reservation))
+                .doOnNext(saved -> log.debug("Hold placed {}", saved))
+                .onErrorResume(e -> {
+                    log.warn("Hold {} failed", reservation, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
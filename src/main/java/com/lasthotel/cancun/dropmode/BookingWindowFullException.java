@@ -0,0 +1,7 @@
+package com.lasthotel.cancun.dropmode;
+
+public class BookingWindowFullException extends RuntimeException {
+    public BookingWindowFullException(int maxQueued) {
+        super("More than " + maxQueued + " bookings queued for the newly opened day");
+    }
+}
@@ -0,0 +1,202 @@
+package com.lasthotel.cancun.dropmode;
+
+import com.lasthotel.cancun.bulkhead.Bulkheads;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Drop mode for the daily opening of D+30.
+ * <p>
+ * During the first seconds after midnight, bookings touching the day that just became bookable are held instead of
+ * racing each other through the overlap check. When the window closes they are resolved one after the other in a
+ * single batch, in arrival order or in lottery order, and every caller receives its own result. Other bookings,
+ * and all bookings outside the window, go straight through.
+ * <p>
+ * Held bookings give their write bulkhead slot back while they wait, and take one again when their turn comes, so
+ * that the window neither fills the write bulkhead nor makes held bookings time out waiting for it.
+ */
+@Component
+@EnableConfigurationProperties(DropModeProperties.class)
+public class BookingWindowGate {
+    private static final Logger log = LoggerFactory.getLogger(BookingWindowGate.class);
+    private static final int BOOKING_HORIZON_DAYS = 30;
+
+    private final DropModeProperties properties;
+    private final Clock clock;
+    private final Random random;
+    private final DistributionSummary batchSize;
+
+    private final Object lock = new Object();
+    private List<Entry<?>> pending = new ArrayList<>();
+    private Mono<Void> resolving = Mono.empty();
+    private int unresolvedBatches;
+
+    @Autowired
+    public BookingWindowGate(DropModeProperties properties, Clock clock, MeterRegistry meterRegistry) {
+        this(properties, clock, meterRegistry, new SecureRandom());
+    }
+
+    BookingWindowGate(DropModeProperties properties, Clock clock, MeterRegistry meterRegistry, Random random) {
+        this.properties = properties;
+        this.clock = clock;
+        this.random = random;
+        this.batchSize = DistributionSummary.builder("cancun.dropmode.batch.size")
+                .description("Bookings resolved together after a window opening")
+                .register(meterRegistry);
+        Gauge.builder("cancun.dropmode.queued", this, BookingWindowGate::getQueued)
+                .description("Bookings currently held for the newly opened day")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the booking for the given dates now, or holds it until the end of the opening window.
+     */
+    public <T> Mono<T> submit(LocalDate from, LocalDate to, Supplier<Mono<T>> booking) {
+        if (!properties.isEnabled() || from == null || to == null) {
+            return Mono.defer(booking);
+        }
+
+        return Mono.deferContextual(context -> {
+            final LocalDateTime now = LocalDateTime.now(clock);
+            final LocalDate opened = now.toLocalDate().plusDays(BOOKING_HORIZON_DAYS);
+            if (from.isAfter(opened) || to.isBefore(opened)) {
+                return Mono.defer(booking);
+            }
+
+            final Optional<Bulkheads.Slot> slot = Bulkheads.currentSlot(context);
+            final Supplier<Mono<T>> resumed = slot.isEmpty()
+                    ? booking
+                    : () -> slot.get().reacquire().then(Mono.defer(booking));
+
+            final LocalDateTime windowEnd = now.toLocalDate().atStartOfDay().plus(properties.getWindow());
+            if (!now.isBefore(windowEnd)) {
+                // Late bookings for the new day queue behind the held ones, even if the timer has not fired yet
+                final Optional<Mono<Void>> heldResolved = unresolved();
+                if (heldResolved.isEmpty()) {
+                    return Mono.defer(booking);
+                }
+                slot.ifPresent(Bulkheads.Slot::release);
+                return heldResolved.get().then(Mono.defer(resumed));
+            }
+
+            return Mono.<T>create(sink -> {
+                if (hold(new Entry<>(resumed, sink), Duration.between(now, windowEnd))) {
+                    slot.ifPresent(Bulkheads.Slot::release);
+                }
+            });
+        });
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private boolean hold(Entry<?> entry, Duration untilWindowEnd) {
+        synchronized (lock) {
+            if (pending.size() >= properties.getMaxQueued()) {
+                entry.sink.error(new BookingWindowFullException(properties.getMaxQueued()));
+                return false;
+            }
+
+            pending.add(entry);
+            if (pending.size() == 1) {
+                Mono.delay(untilWindowEnd).subscribe(tick -> flush());
+            }
+        }
+        entry.sink.onCancel(() -> entry.cancelled = true);
+        return true;
+    }
+
+    /**
+     * Starts resolving the held bookings like {@link #flush}, unless none are held or still being resolved.
+     */
+    private Optional<Mono<Void>> unresolved() {
+        synchronized (lock) {
+            if (pending.isEmpty() && unresolvedBatches == 0) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(flush());
+    }
+
+    /**
+     * Starts resolving the held bookings, if any, and returns the completion of the batch in progress.
+     */
+    private Mono<Void> flush() {
+        final List<Entry<?>> batch;
+        final Mono<Void> resolution;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return resolving;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+
+            if (properties.getPolicy() == DropModeProperties.Policy.LOTTERY) {
+                Collections.shuffle(batch, random);
+            }
+            resolution = Flux.fromIterable(batch)
+                    .concatMap(Entry::run)
+                    .then()
+                    .doFinally(signal -> {
+                        synchronized (lock) {
+                            unresolvedBatches--;
+                        }
+                    })
+                    .cache();
+            resolving = resolution;
+            unresolvedBatches++;
+        }
+
+        log.info("Resolving {} bookings held for the window opening ({})", batch.size(), properties.getPolicy());
+        batchSize.record(batch.size());
+        resolution.subscribe();
+        return resolution;
+    }
+
+    private static final class Entry<T> {
+        private final Supplier<Mono<T>> booking;
+        private final MonoSink<T> sink;
+        private volatile boolean cancelled;
+
+        private Entry(Supplier<Mono<T>> booking, MonoSink<T> sink) {
+            this.booking = booking;
+            this.sink = sink;
+        }
+
+        private Mono<Void> run() {
+            if (cancelled) {
+                return Mono.empty();
+            }
+
+            return Mono.defer(booking)
+                    .doOnSuccess(sink::success)
+                    .doOnError(sink::error)
+                    .onErrorResume(e -> Mono.empty())
+                    .then();
+        }
+    }
+}
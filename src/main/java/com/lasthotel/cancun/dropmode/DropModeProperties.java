@@ -0,0 +1,65 @@
+package com.lasthotel.cancun.dropmode;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "cancun.drop-mode")
+public class DropModeProperties {
+    public enum Policy {
+        /**
+         * Queued bookings are processed in arrival order.
+         */
+        FIFO,
+        /**
+         * Queued bookings are processed in random order, so arriving a few milliseconds earlier gives no edge.
+         */
+        LOTTERY
+    }
+
+    private boolean enabled = true;
+
+    /**
+     * How long after midnight bookings touching the newly opened day are held back.
+     */
+    private Duration window = Duration.ofSeconds(3);
+
+    private Policy policy = Policy.FIFO;
+
+    /**
+     * Bookings that can be held in one window. Beyond that they are rejected with 503.
+     */
+    private int maxQueued = 10_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+}
@@ -0,0 +1,61 @@
+package com.lasthotel.cancun.eventlog;
+
+import com.lasthotel.cancun.repositories.ReservationRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.nio.file.Path;
+import java.time.Clock;
+
+@Configuration
+@ConditionalOnProperty(prefix = "cancun.eventlog", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(EventLogProperties.class)
+public class EventLogConfig {
+    private static final Logger log = LoggerFactory.getLogger(EventLogConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public ReservationEventLog reservationEventLog(EventLogProperties properties,
+                                                  ReservationRepository reservationRepository,
+                                                  Clock clock,
+                                                  MeterRegistry meterRegistry) {
+        final ReservationEventLog eventLog = new ReservationEventLog(Path.of(properties.getDirectory()),
+                properties.getSegmentSizeBytes(), properties.getSnapshotEvery(), properties.getQueueCapacity(), clock);
+        eventLog.recover();
+
+        if (eventLog.isEmpty()) {
+            // First start with an existing collection: take it as the initial snapshot
+            try {
+                reservationRepository.findAll()
+                        .collectList()
+                        .blockOptional(properties.getSeedTimeout())
+                        .ifPresent(eventLog::seed);
+                log.info("Seeded event log with {} reservations", eventLog.getState().size());
+            } catch (RuntimeException e) {
+                log.warn("Could not seed event log from Mongo, starting empty with restore disabled", e);
+                eventLog.markSeedFailed();
+            }
+        }
+
+        Gauge.builder("cancun.eventlog.sequence", eventLog, ReservationEventLog::getSequence)
+                .description("Sequence number of the last event written to the log")
+                .register(meterRegistry);
+        FunctionCounter.builder("cancun.eventlog.lost.events", eventLog, ReservationEventLog::getLostEvents)
+                .description("Changes left out of the log because the queue was full or the append failed")
+                .register(meterRegistry);
+        return eventLog;
+    }
+
+    @Bean
+    public EventLogEndpoint eventLogEndpoint(ReservationEventLog reservationEventLog,
+                                             ReactiveMongoTemplate mongoTemplate) {
+        return new EventLogEndpoint(reservationEventLog, mongoTemplate);
+    }
+}
@@ -0,0 +1,47 @@
+package com.lasthotel.cancun.eventlog;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Actuator endpoint to inspect the event log and to rebuild the reservations collection from it, on single-node
+ * deployments only (see {@link ReservationEventLog#restore}). It is not exposed over HTTP unless listed in
+ * {@code management.endpoints.web.exposure.include}.
+ */
+@Endpoint(id = "eventlog")
+public class EventLogEndpoint {
+    private final ReservationEventLog eventLog;
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public EventLogEndpoint(ReservationEventLog eventLog, ReactiveMongoTemplate mongoTemplate) {
+        this.eventLog = eventLog;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @ReadOperation
+    public Map<String, Object> info() {
+        return Map.of(
+                "sequence", eventLog.getSequence(),
+                "snapshotSequence", eventLog.getSnapshotSequence(),
+                "reservations", eventLog.getState().size(),
+                "lostEvents", eventLog.getLostEvents(),
+                "incomplete", eventLog.getIncompleteReason().orElse(""));
+    }
+
+    @WriteOperation
+    public Mono<Map<String, Object>> restore() {
+        final Optional<String> incomplete = eventLog.getIncompleteReason();
+        if (incomplete.isPresent()) {
+            return Mono.just(Map.of("restored", 0L, "refused", incomplete.get()));
+        }
+
+        return eventLog.restore(mongoTemplate)
+                .map(restored -> Map.of("restored", restored, "sequence", eventLog.getSequence()));
+    }
+}
@@ -0,0 +1,77 @@
+package com.lasthotel.cancun.eventlog;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "cancun.eventlog")
+public class EventLogProperties {
+    private boolean enabled = true;
+
+    private String directory = "data/eventlog";
+
+    private int segmentSizeBytes = 16 * 1024 * 1024;
+
+    /**
+     * Number of events between two snapshots. Segments fully covered by a snapshot are deleted.
+     */
+    private int snapshotEvery = 10_000;
+
+    /**
+     * Changes waiting to be appended. Changes beyond this are left out of the log and counted as lost.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * How long to wait for Mongo when seeding an empty log from the current collection.
+     */
+    private Duration seedTimeout = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentSizeBytes() {
+        return segmentSizeBytes;
+    }
+
+    public void setSegmentSizeBytes(int segmentSizeBytes) {
+        this.segmentSizeBytes = segmentSizeBytes;
+    }
+
+    public int getSnapshotEvery() {
+        return snapshotEvery;
+    }
+
+    public void setSnapshotEvery(int snapshotEvery) {
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getSeedTimeout() {
+        return seedTimeout;
+    }
+
+    public void setSeedTimeout(Duration seedTimeout) {
+        this.seedTimeout = seedTimeout;
+    }
+}
@@ -0,0 +1,67 @@
+package com.lasthotel.cancun.eventlog;
+
+import com.lasthotel.cancun.models.Reservation;
+
+import java.util.Objects;
+
+/**
+ * One mutation in the event log. For deletions the reservation is the one that was removed.
+ */
+public class ReservationEvent {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final long sequence;
+    private final long timestamp;
+    private final Type type;
+    private final Reservation reservation;
+
+    public ReservationEvent(long sequence, long timestamp, Type type, Reservation reservation) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.reservation = reservation;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReservationEvent that = (ReservationEvent) o;
+        return sequence == that.sequence && timestamp == that.timestamp && type == that.type && Objects.equals(reservation, that.reservation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, timestamp, type, reservation);
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationEvent{" +
+                "sequence=" + sequence +
+                ", timestamp=" + timestamp +
+                ", type=" + type +
+                ", reservation=" + reservation +
+                '}';
+    }
+}
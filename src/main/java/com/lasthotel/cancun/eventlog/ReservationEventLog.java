@@ -0,0 +1,589 @@
+package com.lasthotel.cancun.eventlog;
+
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.services.ReservationChangedEvent;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only log of reservation mutations, stored in fixed-size memory-mapped segment files.
+ * <p>
+ * Each record is {@code [length][crc32][payload]} and a zero length marks the end of the written part of a segment,
+ * so a record torn by a crash is detected by its checksum and cut off on the next start. Every
+ * {@code snapshotEvery} events the current state is written to a snapshot file, a new segment is started and the
+ * segments covered by the snapshot are deleted. Recovery therefore only reads one snapshot and a short tail.
+ * <p>
+ * Changes published by the service are appended by a single background thread, so a slow disk or a failed append
+ * never delays or fails the request that made the change. Changes that find the queue full or fail to append are
+ * left out of the log and counted in {@link #getLostEvents()}.
+ */
+public class ReservationEventLog implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReservationEventLog.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int SNAPSHOT_MAGIC = 0x43414e53;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SEED_FAILED_MARKER = "seed-failed";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int snapshotEvery;
+    private final Clock clock;
+    private final ThreadPoolExecutor appender;
+    private final AtomicLong lostEvents = new AtomicLong();
+    private volatile boolean seedFailed;
+
+    private final Map<String, Reservation> state = new HashMap<>();
+    private long sequence;
+    private long snapshotSequence;
+    private long eventsSinceSnapshot;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+
+    public ReservationEventLog(Path directory, int segmentSize, int snapshotEvery, int queueCapacity, Clock clock) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.snapshotEvery = snapshotEvery;
+        this.clock = clock;
+        this.appender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("eventlog-append-"),
+                (task, executor) -> {
+                    lostEvents.incrementAndGet();
+                    log.warn("Event log queue is full, a change is left out of the log");
+                });
+    }
+
+    /**
+     * Loads the latest snapshot and replays the segments written after it. Must be called before appending.
+     */
+    public synchronized void recover() {
+        final long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            seedFailed = Files.exists(directory.resolve(SEED_FAILED_MARKER));
+
+            final List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            if (!snapshots.isEmpty()) {
+                readSnapshot(snapshots.get(snapshots.size() - 1));
+            }
+
+            long replayed = 0;
+            final List<Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            for (int i = 0; i < segments.size(); i++) {
+                final boolean last = i == segments.size() - 1;
+                replayed += replaySegment(segments.get(i), last);
+            }
+
+            if (segment == null) {
+                openSegment(sequence + 1);
+            }
+
+            log.info("Recovered {} reservations at sequence {} ({} events replayed) in {} ms",
+                    state.size(), sequence, replayed, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover event log from " + directory, e);
+        }
+    }
+
+    @EventListener
+    public void onReservationChanged(ReservationChangedEvent event) {
+        final ReservationEvent.Type type;
+        final Reservation reservation;
+        if (event.getAfter() == null) {
+            type = ReservationEvent.Type.DELETED;
+            reservation = copy(event.getBefore());
+        } else if (event.getBefore() == null) {
+            type = ReservationEvent.Type.CREATED;
+            reservation = copy(event.getAfter());
+        } else {
+            type = ReservationEvent.Type.UPDATED;
+            reservation = copy(event.getAfter());
+        }
+
+        appender.execute(() -> {
+            try {
+                append(type, reservation);
+            } catch (RuntimeException e) {
+                lostEvents.incrementAndGet();
+                log.error("Could not append {} {} to the event log", type, reservation, e);
+            }
+        });
+    }
+
+    public synchronized ReservationEvent append(ReservationEvent.Type type, Reservation reservation) {
+        final ReservationEvent event = new ReservationEvent(sequence + 1, clock.millis(), type, copy(reservation));
+        final byte[] payload = encode(event);
+
+        try {
+            if (segment.remaining() < RECORD_HEADER_BYTES + payload.length + 4) {
+                if (RECORD_HEADER_BYTES + payload.length + 4 > segmentSize) {
+                    throw new IllegalArgumentException("Event does not fit in a segment: " + event);
+                }
+                openSegment(event.getSequence());
+            }
+
+            // The length goes last so that a crash in between leaves the end marker in place
+            final int position = segment.position();
+            segment.position(position + 4);
+            segment.putInt(checksum(payload));
+            segment.put(payload);
+            segment.putInt(position, payload.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to event log " + directory, e);
+        }
+
+        apply(event);
+
+        if (++eventsSinceSnapshot >= snapshotEvery) {
+            snapshot();
+        }
+        return event;
+    }
+
+    /**
+     * Writes the current state to a new snapshot and deletes everything it makes obsolete.
+     */
+    public synchronized void snapshot() {
+        try {
+            final Path target = directory.resolve(fileName(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+            final Path temp = directory.resolve(target.getFileName() + ".tmp");
+            writeSnapshot(temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            snapshotSequence = sequence;
+            eventsSinceSnapshot = 0;
+            openSegment(sequence + 1);
+
+            for (Path old : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (!old.equals(target)) {
+                    Files.delete(old);
+                }
+            }
+            for (Path old : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (firstSequence(old) <= snapshotSequence) {
+                    Files.delete(old);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot to " + directory, e);
+        }
+    }
+
+    /**
+     * Starts a fresh log from the given reservations, used when there is no history yet.
+     */
+    public synchronized void seed(Collection<Reservation> reservations) {
+        state.clear();
+        reservations.forEach(reservation -> state.put(reservation.getId(), copy(reservation)));
+        snapshot();
+        try {
+            Files.deleteIfExists(directory.resolve(SEED_FAILED_MARKER));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not clear seed marker in " + directory, e);
+        }
+        seedFailed = false;
+    }
+
+    /**
+     * Records that the reservations existing before the log started could not be seeded into it. The mark is kept
+     * on disk, so it outlives restarts until a later {@link #seed}.
+     */
+    public void markSeedFailed() {
+        seedFailed = true;
+        try {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(SEED_FAILED_MARKER), new byte[0]);
+        } catch (IOException e) {
+            log.warn("Could not persist seed marker in {}", directory, e);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return sequence == 0 && state.isEmpty();
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public synchronized long getSnapshotSequence() {
+        return snapshotSequence;
+    }
+
+    public long getLostEvents() {
+        return lostEvents.get();
+    }
+
+    /**
+     * Why the log is known to miss reservations, which rules out restoring from it.
+     */
+    public Optional<String> getIncompleteReason() {
+        if (seedFailed) {
+            return Optional.of("the existing reservations could not be seeded into the log");
+        }
+        final long lost = getLostEvents();
+        return lost == 0 ? Optional.empty() : Optional.of(lost + " changes were left out of the log");
+    }
+
+    public synchronized Map<String, Reservation> getState() {
+        final Map<String, Reservation> copy = new HashMap<>();
+        state.forEach((id, reservation) -> copy.put(id, copy(reservation)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Reads every event still held in the segments, oldest first. Events folded into the snapshot are not included.
+     */
+    public synchronized List<ReservationEvent> readEvents() {
+        try {
+            final List<ReservationEvent> events = new ArrayList<>();
+            for (Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    final ByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                    ReservationEvent event;
+                    while ((event = readRecord(buffer)) != null) {
+                        events.add(event);
+                    }
+                }
+            }
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read event log " + directory, e);
+        }
+    }
+
+    /**
+     * Replaces the reservations collection with the state rebuilt from the log. The state is written to a side
+     * collection, which then replaces the live one in a single rename. If this node logs a change in the meantime, the
+     * side collection is dropped and the restore fails, leaving the live collection untouched.
+     * <p>
+     * The log only holds the changes made through this node, so this is meant for single-node deployments, with
+     * traffic stopped. A log known to be incomplete is refused before Mongo is touched.
+     */
+    public Mono<Long> restore(ReactiveMongoTemplate mongoTemplate) {
+        final Optional<String> incomplete = getIncompleteReason();
+        if (incomplete.isPresent()) {
+            return Mono.error(new IllegalStateException("Refusing to restore from an incomplete event log: "
+                    + incomplete.get()));
+        }
+
+        final String collection = mongoTemplate.getCollectionName(Reservation.class);
+        final String sideCollection = collection + ".restore";
+
+        // Taken on the appender thread, so that the changes queued before the restore are included
+        return Mono.fromFuture(() -> CompletableFuture.supplyAsync(this::checkpoint, appender))
+                .flatMap(checkpoint -> {
+                    log.warn("Restoring '{}' from the event log at sequence {} ({} reservations)",
+                            collection, checkpoint.sequence, checkpoint.reservations.size());
+                    return mongoTemplate.dropCollection(sideCollection)
+                            .then(mongoTemplate.createCollection(sideCollection))
+                            .thenMany(mongoTemplate.insert(checkpoint.reservations, sideCollection))
+                            .count()
+                            .flatMap(restored -> {
+                                if (getSequence() != checkpoint.sequence) {
+                                    return mongoTemplate.dropCollection(sideCollection)
+                                            .then(Mono.error(new IllegalStateException("Reservations changed during the "
+                                                    + "restore, stop traffic to this node and retry")));
+                                }
+                                return mongoTemplate.getCollection(sideCollection)
+                                        .flatMap(side -> Mono.from(side.renameCollection(
+                                                new MongoNamespace(side.getNamespace().getDatabaseName(), collection),
+                                                new RenameCollectionOptions().dropTarget(true))))
+                                        .thenReturn(restored);
+                            });
+                })
+                .doOnNext(restored -> log.warn("Restored {} reservations into '{}'", restored, collection))
+                .doOnError(e -> log.error("Could not restore '{}' from the event log", collection, e));
+    }
+
+    @Override
+    public void close() throws IOException {
+        appender.shutdown();
+        try {
+            if (!appender.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Event log closed with {} changes still queued", appender.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (channel != null) {
+                segment.force();
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private synchronized Checkpoint checkpoint() {
+        return new Checkpoint(sequence, getState().values());
+    }
+
+    private long replaySegment(Path path, boolean last) throws IOException {
+        long replayed = 0;
+        final FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileChannel.size());
+
+        ReservationEvent event;
+        int end = 0;
+        while ((event = readRecord(buffer)) != null) {
+            end = buffer.position();
+            if (event.getSequence() <= sequence) {
+                continue;
+            }
+            apply(event);
+            eventsSinceSnapshot++;
+            replayed++;
+        }
+
+        if (end < buffer.limit() && buffer.getInt(end) != 0) {
+            log.warn("Discarding torn record at offset {} of {}", end, path);
+            for (int i = end; i < buffer.limit(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+
+        if (last) {
+            buffer.position(end);
+            channel = fileChannel;
+            segment = buffer;
+        } else {
+            fileChannel.close();
+        }
+        return replayed;
+    }
+
+    /**
+     * Reads the record at the buffer position, leaving the position after it, or returns null at the end of the
+     * written part or on a damaged record.
+     */
+    private ReservationEvent readRecord(ByteBuffer buffer) {
+        final int start = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_BYTES) {
+            return null;
+        }
+
+        final int length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining() - 4) {
+            buffer.position(start);
+            return null;
+        }
+
+        final int crc = buffer.getInt();
+        final byte[] payload = new byte[length];
+        buffer.get(payload);
+        if (checksum(payload) != crc) {
+            buffer.position(start);
+            return null;
+        }
+
+        try {
+            return decode(ByteBuffer.wrap(payload));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            buffer.position(start);
+            return null;
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+
+        final Path path = directory.resolve(fileName(SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private void apply(ReservationEvent event) {
+        final Reservation reservation = event.getReservation();
+        if (event.getType() == ReservationEvent.Type.DELETED) {
+            state.remove(reservation.getId());
+        } else {
+            state.put(reservation.getId(), reservation);
+        }
+        sequence = event.getSequence();
+    }
+
+    private void writeSnapshot(Path path) throws IOException {
+        final CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)), new CRC32());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(state.size());
+            for (Reservation reservation : state.values()) {
+                out.writeUTF(reservation.getId());
+                out.writeUTF(reservation.getUser() == null ? "" : reservation.getUser());
+                out.writeLong(reservation.getFrom().toEpochDay());
+                out.writeLong(reservation.getTo().toEpochDay());
+            }
+            out.writeLong(checked.getChecksum().getValue());
+        }
+    }
+
+    private void readSnapshot(Path path) throws IOException {
+        final CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(path)), new CRC32());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot: " + path);
+            }
+
+            final long snapshotAt = in.readLong();
+            final int count = in.readInt();
+            final Map<String, Reservation> loaded = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                final Reservation reservation = new Reservation();
+                reservation.setId(in.readUTF());
+                reservation.setUser(in.readUTF());
+                reservation.setFrom(LocalDate.ofEpochDay(in.readLong()));
+                reservation.setTo(LocalDate.ofEpochDay(in.readLong()));
+                loaded.put(reservation.getId(), reservation);
+            }
+
+            final long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+
+            state.putAll(loaded);
+            sequence = snapshotAt;
+            snapshotSequence = snapshotAt;
+        }
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        final String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long firstSequence(Path segmentPath) {
+        final String name = segmentPath.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String fileName(String prefix, long sequence, String suffix) {
+        return String.format("%s%020d%s", prefix, sequence, suffix);
+    }
+
+    private static byte[] encode(ReservationEvent event) {
+        final Reservation reservation = event.getReservation();
+        final byte[] id = bytes(reservation.getId());
+        final byte[] user = bytes(reservation.getUser());
+
+        final ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 1 + 8 + 8 + 2 + id.length + 2 + user.length);
+        buffer.putLong(event.getSequence());
+        buffer.putLong(event.getTimestamp());
+        buffer.put((byte) event.getType().ordinal());
+        buffer.putLong(reservation.getFrom().toEpochDay());
+        buffer.putLong(reservation.getTo().toEpochDay());
+        buffer.putShort((short) id.length).put(id);
+        buffer.putShort((short) user.length).put(user);
+        return buffer.array();
+    }
+
+    private static ReservationEvent decode(ByteBuffer buffer) {
+        final long sequence = buffer.getLong();
+        final long timestamp = buffer.getLong();
+        final ReservationEvent.Type type = ReservationEvent.Type.values()[buffer.get()];
+
+        final Reservation reservation = new Reservation();
+        reservation.setFrom(LocalDate.ofEpochDay(buffer.getLong()));
+        reservation.setTo(LocalDate.ofEpochDay(buffer.getLong()));
+        reservation.setId(string(buffer));
+        reservation.setUser(string(buffer));
+        return new ReservationEvent(sequence, timestamp, type, reservation);
+    }
+
+    private static byte[] bytes(String value) {
+        final byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Value too long for the event log: " + value.length() + " characters");
+        }
+        return bytes;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static Reservation copy(Reservation reservation) {
+        final Reservation copy = new Reservation(reservation.getUser(), reservation.getFrom(), reservation.getTo());
+        copy.setId(reservation.getId());
+        return copy;
+    }
+
+    private static final class Checkpoint {
+        private final long sequence;
+        private final Collection<Reservation> reservations;
+
+        private Checkpoint(long sequence, Collection<Reservation> reservations) {
+            this.sequence = sequence;
+            this.reservations = reservations;
+        }
+    }
+}
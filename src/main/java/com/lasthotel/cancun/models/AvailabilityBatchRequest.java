@@ -0,0 +1,43 @@
+package com.lasthotel.cancun.models;
+
+import java.util.List;
+import java.util.Objects;
+
+public class AvailabilityBatchRequest {
+    private List<AvailabilityQuery> ranges;
+
+    public AvailabilityBatchRequest() {
+    }
+
+    public AvailabilityBatchRequest(List<AvailabilityQuery> ranges) {
+        this.ranges = ranges;
+    }
+
+    public List<AvailabilityQuery> getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(List<AvailabilityQuery> ranges) {
+        this.ranges = ranges;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvailabilityBatchRequest that = (AvailabilityBatchRequest) o;
+        return Objects.equals(ranges, that.ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ranges);
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityBatchRequest{" +
+                "ranges=" + ranges +
+                '}';
+    }
+}
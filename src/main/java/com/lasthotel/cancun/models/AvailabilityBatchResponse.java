@@ -0,0 +1,76 @@
+package com.lasthotel.cancun.models;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Answers a batch of availability queries at once.
+ * {@code occupancy} holds one entry per day starting at {@code from}, 1 if the day is taken and 0 otherwise, and
+ * spans every requested range. {@code available} holds one entry per requested range, in request order.
+ */
+public class AvailabilityBatchResponse {
+    private LocalDate from;
+
+    private int[] occupancy;
+
+    private boolean[] available;
+
+    public AvailabilityBatchResponse() {
+    }
+
+    public AvailabilityBatchResponse(LocalDate from, int[] occupancy, boolean[] available) {
+        this.from = from;
+        this.occupancy = occupancy;
+        this.available = available;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public int[] getOccupancy() {
+        return occupancy;
+    }
+
+    public void setOccupancy(int[] occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    public boolean[] getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean[] available) {
+        this.available = available;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvailabilityBatchResponse that = (AvailabilityBatchResponse) o;
+        return Objects.equals(from, that.from) && Arrays.equals(occupancy, that.occupancy) && Arrays.equals(available, that.available);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(from);
+        result = 31 * result + Arrays.hashCode(occupancy);
+        result = 31 * result + Arrays.hashCode(available);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityBatchResponse{" +
+                "from=" + from +
+                ", occupancy=" + Arrays.toString(occupancy) +
+                ", available=" + Arrays.toString(available) +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.lasthotel.cancun.models;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class AvailabilityQuery {
+    private LocalDate from;
+
+    private LocalDate to;
+
+    public AvailabilityQuery() {
+    }
+
+    public AvailabilityQuery(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvailabilityQuery that = (AvailabilityQuery) o;
+        return Objects.equals(from, that.from) && Objects.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityQuery{" +
+                "from=" + from +
+                ", to=" + to +
+                '}';
+    }
+}
@@ -0,0 +1,67 @@
+package com.lasthotel.cancun.models;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class AvailabilityUpdate {
+    private LocalDate from;
+
+    private LocalDate to;
+
+    private boolean available;
+
+    public AvailabilityUpdate() {
+    }
+
+    public AvailabilityUpdate(LocalDate from, LocalDate to, boolean available) {
+        this.from = from;
+        this.to = to;
+        this.available = available;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvailabilityUpdate that = (AvailabilityUpdate) o;
+        return available == that.available && Objects.equals(from, that.from) && Objects.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(from, to, available);
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityUpdate{" +
+                "from=" + from +
+                ", to=" + to +
+                ", available=" + available +
+                '}';
+    }
+}
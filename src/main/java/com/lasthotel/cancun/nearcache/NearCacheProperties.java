@@ -0,0 +1,58 @@
+package com.lasthotel.cancun.nearcache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "cancun.near-cache")
+public class NearCacheProperties {
+    private boolean enabled = true;
+
+    /**
+     * Total weight of the cached entries, where each user weighs one plus their number of reservations. Caffeine
+     * cannot bound both size and weight, and as every user weighs at least one, this also caps the number of users.
+     */
+    private long maximumWeight = 100_000;
+
+    /**
+     * Safety net in case an invalidation from another node is missed. Local writes update entries directly.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * How long users without reservations are remembered as such.
+     */
+    private Duration negativeTtl = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(Duration negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+}
@@ -0,0 +1,134 @@
+package com.lasthotel.cancun.nearcache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.lasthotel.cancun.coherence.InvalidationEvent;
+import com.lasthotel.cancun.coherence.InvalidationListener;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.services.ReservationChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded near cache of each user's reservations.
+ * <p>
+ * Entries are loaded on first use, with concurrent loads for the same user sharing one query, and evicted by
+ * W-TinyLFU once the total weight is reached. Users without reservations are cached too, for a shorter time. Local
+ * writes update the cached lists in place, while writes on other nodes drop the affected users.
+ */
+@Component
+@EnableConfigurationProperties(NearCacheProperties.class)
+public class UserReservationCache implements InvalidationListener {
+    private final NearCacheProperties properties;
+    private final AsyncCache<String, List<Reservation>> cache;
+
+    @Autowired
+    public UserReservationCache(NearCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumWeight())
+                .weigher((String user, List<Reservation> reservations) -> 1 + reservations.size())
+                .expireAfter(new Expiry<String, List<Reservation>>() {
+                    @Override
+                    public long expireAfterCreate(String user, List<Reservation> reservations, long currentTime) {
+                        return timeToLive(reservations);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String user, List<Reservation> reservations, long currentTime, long currentDuration) {
+                        return timeToLive(reservations);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String user, List<Reservation> reservations, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userReservations");
+    }
+
+    public Flux<Reservation> get(String user, Function<String, Flux<Reservation>> loader) {
+        if (!properties.isEnabled()) {
+            return loader.apply(user);
+        }
+
+        return Mono.defer(() -> {
+                    final CompletableFuture<List<Reservation>> reservations = cache.get(user,
+                            (key, executor) -> loader.apply(key).collectList().<List<Reservation>>map(List::copyOf).toFuture());
+                    // A cancelled caller must not cancel the load other callers are waiting for
+                    return Mono.fromFuture(reservations.copy());
+                })
+                .flatMapIterable(Function.identity());
+    }
+
+    @EventListener
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        final Reservation before = event.getBefore();
+        final Reservation after = event.getAfter();
+        if (before != null) {
+            update(before.getUser(), reservations -> without(reservations, before.getId()));
+        }
+        if (after != null) {
+            update(after.getUser(), reservations -> {
+                final List<Reservation> updated = new ArrayList<>(without(reservations, after.getId()));
+                updated.add(after);
+                return List.copyOf(updated);
+            });
+        }
+    }
+
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+        // Local writes were applied by onReservationChanged already, and the bus drops their change stream echoes
+        if (!properties.isEnabled() || event.isLocal()) {
+            return;
+        }
+
+        if (event.isFullResync() || event.getUsers() == null) {
+            cache.synchronous().invalidateAll();
+        } else {
+            cache.synchronous().invalidateAll(event.getUsers());
+        }
+    }
+
+    private void update(String user, UnaryOperator<List<Reservation>> change) {
+        if (user != null) {
+            // Chaining on the cached future also covers a load still in flight
+            cache.asMap().computeIfPresent(user, (key, reservations) -> reservations.thenApply(change));
+        }
+    }
+
+    private long timeToLive(List<Reservation> reservations) {
+        return (reservations.isEmpty() ? properties.getNegativeTtl() : properties.getTtl()).toNanos();
+    }
+
+    private static List<Reservation> without(List<Reservation> reservations, String id) {
+        final List<Reservation> remaining = new ArrayList<>(reservations.size());
+        for (Reservation reservation : reservations) {
+            if (!Objects.equals(reservation.getId(), id)) {
+                remaining.add(reservation);
+            }
+        }
+        return List.copyOf(remaining);
+    }
+}
@@ -0,0 +1,38 @@
+package com.lasthotel.cancun.rsocket;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+
+/**
+ * Reads payloads in the {@link CompactPayloadFormat}.
+ */
+public class CompactPayloadDecoder extends AbstractDataBufferDecoder<Object> {
+
+    public CompactPayloadDecoder() {
+        super(CompactPayloadFormat.MIME_TYPE);
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null
+                && super.canDecode(elementType, mimeType)
+                && CompactPayloadFormat.supports(elementType.resolve());
+    }
+
+    @Override
+    public Object decode(DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints) {
+        try {
+            return CompactPayloadFormat.read(buffer, targetType.resolve());
+        } catch (IndexOutOfBoundsException e) {
+            throw new DecodingException("Truncated " + targetType + " payload", e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
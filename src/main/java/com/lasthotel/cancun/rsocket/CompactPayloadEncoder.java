@@ -0,0 +1,56 @@
+package com.lasthotel.cancun.rsocket;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes payloads in the {@link CompactPayloadFormat}.
+ */
+public class CompactPayloadEncoder implements Encoder<Object> {
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null
+                && CompactPayloadFormat.MIME_TYPE.isCompatibleWith(mimeType)
+                && CompactPayloadFormat.supports(elementType.resolve());
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream,
+                                   DataBufferFactory bufferFactory,
+                                   ResolvableType elementType,
+                                   MimeType mimeType,
+                                   Map<String, Object> hints) {
+        return Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value,
+                                  DataBufferFactory bufferFactory,
+                                  ResolvableType valueType,
+                                  MimeType mimeType,
+                                  Map<String, Object> hints) {
+        final DataBuffer buffer = bufferFactory.allocateBuffer(CompactPayloadFormat.estimateSize(value));
+        try {
+            CompactPayloadFormat.write(value, buffer);
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return List.of(CompactPayloadFormat.MIME_TYPE);
+    }
+}
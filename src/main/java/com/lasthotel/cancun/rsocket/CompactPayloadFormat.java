@@ -0,0 +1,141 @@
+package com.lasthotel.cancun.rsocket;
+
+import com.lasthotel.cancun.models.AvailabilityQuery;
+import com.lasthotel.cancun.models.AvailabilityUpdate;
+import com.lasthotel.cancun.models.Reservation;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Fixed-layout binary encoding for the RSocket payloads, big-endian throughout.
+ * <ul>
+ *     <li>{@link AvailabilityQuery}: from and to as epoch days, 8 bytes</li>
+ *     <li>{@link AvailabilityUpdate}: from and to as epoch days, then 1 byte for availability, 9 bytes</li>
+ *     <li>{@link Reservation}: from and to as epoch days, then id and user as length-prefixed UTF-8</li>
+ * </ul>
+ * Missing dates are written as {@link Integer#MIN_VALUE} and missing strings with a length of -1.
+ */
+public final class CompactPayloadFormat {
+    public static final MimeType MIME_TYPE = new MimeType("application", "vnd.cancun.compact");
+
+    static final Set<Class<?>> SUPPORTED_TYPES = Set.of(AvailabilityQuery.class, AvailabilityUpdate.class, Reservation.class);
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_STRING = -1;
+    private static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+    private CompactPayloadFormat() {
+    }
+
+    static boolean supports(Class<?> type) {
+        return type != null && SUPPORTED_TYPES.contains(type);
+    }
+
+    static int estimateSize(Object value) {
+        if (value instanceof Reservation) {
+            final Reservation reservation = (Reservation) value;
+            return 12 + utf8Length(reservation.getId()) + utf8Length(reservation.getUser());
+        }
+        return 9;
+    }
+
+    static void write(Object value, DataBuffer buffer) {
+        if (value instanceof AvailabilityQuery) {
+            final AvailabilityQuery query = (AvailabilityQuery) value;
+            writeDate(query.getFrom(), buffer);
+            writeDate(query.getTo(), buffer);
+        } else if (value instanceof AvailabilityUpdate) {
+            final AvailabilityUpdate update = (AvailabilityUpdate) value;
+            writeDate(update.getFrom(), buffer);
+            writeDate(update.getTo(), buffer);
+            buffer.write((byte) (update.isAvailable() ? 1 : 0));
+        } else if (value instanceof Reservation) {
+            final Reservation reservation = (Reservation) value;
+            writeDate(reservation.getFrom(), buffer);
+            writeDate(reservation.getTo(), buffer);
+            writeString(reservation.getId(), buffer);
+            writeString(reservation.getUser(), buffer);
+        } else {
+            throw new IllegalArgumentException("Unsupported payload type " + (value == null ? null : value.getClass()));
+        }
+    }
+
+    static Object read(DataBuffer buffer, Class<?> type) {
+        if (type == AvailabilityQuery.class) {
+            return new AvailabilityQuery(readDate(buffer), readDate(buffer));
+        } else if (type == AvailabilityUpdate.class) {
+            return new AvailabilityUpdate(readDate(buffer), readDate(buffer), buffer.read() != 0);
+        } else if (type == Reservation.class) {
+            final LocalDate from = readDate(buffer);
+            final LocalDate to = readDate(buffer);
+            final Reservation reservation = new Reservation();
+            reservation.setId(readString(buffer));
+            reservation.setUser(readString(buffer));
+            reservation.setFrom(from);
+            reservation.setTo(to);
+            return reservation;
+        }
+        throw new IllegalArgumentException("Unsupported payload type " + type);
+    }
+
+    private static void writeDate(LocalDate date, DataBuffer buffer) {
+        writeInt(date == null ? NO_DATE : (int) date.toEpochDay(), buffer);
+    }
+
+    private static LocalDate readDate(DataBuffer buffer) {
+        final int epochDay = readInt(buffer);
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static void writeString(String value, DataBuffer buffer) {
+        if (value == null) {
+            writeShort(NO_STRING, buffer);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new EncodingException("String of " + bytes.length + " bytes exceeds " + MAX_STRING_BYTES);
+        }
+        writeShort(bytes.length, buffer);
+        buffer.write(bytes);
+    }
+
+    private static String readString(DataBuffer buffer) {
+        final int length = (short) ((buffer.read() & 0xFF) << 8 | (buffer.read() & 0xFF));
+        if (length == NO_STRING) {
+            return null;
+        }
+        if (length < 0 || length > buffer.readableByteCount()) {
+            throw new DecodingException("Invalid string length " + length + " with " + buffer.readableByteCount()
+                    + " bytes left");
+        }
+        final byte[] bytes = new byte[length];
+        buffer.read(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(int value, DataBuffer buffer) {
+        buffer.write(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    private static int readInt(DataBuffer buffer) {
+        return (buffer.read() & 0xFF) << 24
+                | (buffer.read() & 0xFF) << 16
+                | (buffer.read() & 0xFF) << 8
+                | (buffer.read() & 0xFF);
+    }
+
+    private static void writeShort(int value, DataBuffer buffer) {
+        buffer.write(new byte[]{(byte) (value >>> 8), (byte) value});
+    }
+
+    private static int utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
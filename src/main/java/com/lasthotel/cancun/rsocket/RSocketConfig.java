@@ -0,0 +1,16 @@
+package com.lasthotel.cancun.rsocket;
+
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RSocketConfig {
+
+    @Bean
+    public RSocketStrategiesCustomizer compactPayloadCodecCustomizer() {
+        return strategies -> strategies
+                .encoder(new CompactPayloadEncoder())
+                .decoder(new CompactPayloadDecoder());
+    }
+}
@@ -0,0 +1,62 @@
+package com.lasthotel.cancun.rsocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.rsocket.netty.NettyRSocketServerFactory;
+import org.springframework.boot.rsocket.server.RSocketServer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves the RSocket routes over plain TCP, next to the WebSocket transport Spring Boot mounts on the web server.
+ * A negative port disables it, and port 0 picks a free one.
+ */
+@Component
+public class RSocketTcpServer implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(RSocketTcpServer.class);
+
+    private final RSocketMessageHandler messageHandler;
+    private final int port;
+
+    private RSocketServer server;
+
+    @Autowired
+    public RSocketTcpServer(RSocketMessageHandler messageHandler, @Value("${cancun.rsocket.tcp-port:7000}") int port) {
+        this.messageHandler = messageHandler;
+        this.port = port;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (port < 0 || server != null) {
+            return;
+        }
+
+        final NettyRSocketServerFactory factory = new NettyRSocketServerFactory();
+        factory.setPort(port);
+        factory.setTransport(RSocketServer.Transport.TCP);
+        server = factory.create(messageHandler.responder());
+        server.start();
+        log.info("RSocket TCP server started on port {}", getPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    public synchronized int getPort() {
+        return server == null ? -1 : server.address().getPort();
+    }
+}
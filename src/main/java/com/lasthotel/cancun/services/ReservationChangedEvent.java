@@ -0,0 +1,33 @@
+package com.lasthotel.cancun.services;
+
+import com.lasthotel.cancun.models.Reservation;
+
+/**
+ * Published after a reservation has been created, updated or deleted on this node.
+ * {@code before} is null for creations and {@code after} is null for deletions.
+ */
+public class ReservationChangedEvent {
+    private final Reservation before;
+    private final Reservation after;
+
+    public ReservationChangedEvent(Reservation before, Reservation after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    public Reservation getBefore() {
+        return before;
+    }
+
+    public Reservation getAfter() {
+        return after;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationChangedEvent{" +
+                "before=" + before +
+                ", after=" + after +
+                '}';
+    }
+}
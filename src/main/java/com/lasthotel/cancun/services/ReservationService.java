@@ -1,5 +1,7 @@
 package com.lasthotel.cancun.services;
 
+import com.lasthotel.cancun.models.AvailabilityBatchResponse;
+import com.lasthotel.cancun.models.AvailabilityQuery;
 import com.lasthotel.cancun.models.Reservation;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -12,6 +14,8 @@ public interface ReservationService {
 
     Mono<List<Reservation>> getAvailableReservationIntervals();
 
+    Mono<AvailabilityBatchResponse> getAvailability(List<AvailabilityQuery> ranges);
+
     Mono<Reservation> makeReservation(Reservation reservation);
 
     Mono<Reservation> updateReservation(String id, Reservation reservation);
@@ -1,7 +1,12 @@
 package com.lasthotel.cancun.services;
 
+import com.lasthotel.cancun.models.AvailabilityBatchResponse;
+import com.lasthotel.cancun.models.AvailabilityQuery;
 import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.nearcache.UserReservationCache;
 import com.lasthotel.cancun.repositories.ReservationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -15,16 +20,38 @@ import java.util.List;
 
 @Service
 public class ReservationServiceImpl implements ReservationService {
+    private static final int SINGLE_FLIGHT_STRIPES = 16;
+
     private final ReservationRepository reservationRepository;
     private final Clock clock;
-
-    public ReservationServiceImpl(ReservationRepository reservationRepository, Clock clock) {
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserReservationCache userReservationCache;
+    private final SingleFlight<List<LocalDate>, Boolean> reservationTakenFlights;
+    private final SingleFlight<LocalDate, List<Reservation>> availableIntervalsFlights;
+
+    public ReservationServiceImpl(ReservationRepository reservationRepository,
+                                  Clock clock,
+                                  ApplicationEventPublisher eventPublisher,
+                                  UserReservationCache userReservationCache,
+                                  MeterRegistry meterRegistry) {
         this.reservationRepository = reservationRepository;
         this.clock = clock;
+        this.eventPublisher = eventPublisher;
+        this.userReservationCache = userReservationCache;
+        this.reservationTakenFlights = new SingleFlight<>("isReservationTaken", SINGLE_FLIGHT_STRIPES, meterRegistry);
+        this.availableIntervalsFlights = new SingleFlight<>("getAvailableReservationIntervals", SINGLE_FLIGHT_STRIPES, meterRegistry);
     }
 
     @Override
     public Mono<Boolean> isReservationTaken(LocalDate from, LocalDate to) {
+        return reservationTakenFlights.execute(List.of(from, to), () -> findReservationTaken(from, to));
+    }
+
+    /**
+     * Queries the DB directly. Writes use this instead of {@link #isReservationTaken(LocalDate, LocalDate)} so their
+     * overlap check never joins a read that started before them.
+     */
+    private Mono<Boolean> findReservationTaken(LocalDate from, LocalDate to) {
         return reservationRepository
                 .findOverlappingReservations(from, to)
                 .collectList()
@@ -33,6 +60,11 @@ public class ReservationServiceImpl implements ReservationService {
 
     @Override
     public Mono<List<Reservation>> getAvailableReservationIntervals() {
+        // The intervals depend on the current date, so that is part of the key
+        return availableIntervalsFlights.execute(LocalDate.now(clock), this::findAvailableReservationIntervals);
+    }
+
+    private Mono<List<Reservation>> findAvailableReservationIntervals() {
         final List<Reservation> availableReservations = new ArrayList<>();
         return getAllReservations()
                 .index()
@@ -85,21 +117,58 @@ public class ReservationServiceImpl implements ReservationService {
                 );
     }
 
+    @Override
+    public Mono<AvailabilityBatchResponse> getAvailability(List<AvailabilityQuery> ranges) {
+        final LocalDate first = ranges.stream().map(AvailabilityQuery::getFrom).min(Comparator.naturalOrder()).orElseThrow();
+        final LocalDate last = ranges.stream().map(AvailabilityQuery::getTo).max(Comparator.naturalOrder()).orElseThrow();
+
+        return reservationRepository
+                .findOverlappingReservations(first, last)
+                .collectList()
+                .map(reservations -> {
+                    final int[] occupancy = new int[(int) ChronoUnit.DAYS.between(first, last) + 1];
+                    for (Reservation reservation : reservations) {
+                        final LocalDate start = reservation.getFrom().isBefore(first) ? first : reservation.getFrom();
+                        final LocalDate end = reservation.getTo().isAfter(last) ? last : reservation.getTo();
+                        for (long day = ChronoUnit.DAYS.between(first, start); day <= ChronoUnit.DAYS.between(first, end); day++) {
+                            occupancy[(int) day] = 1;
+                        }
+                    }
+
+                    // occupiedBefore[i] is the number of occupied days before day i, so each range is answered in O(1)
+                    final int[] occupiedBefore = new int[occupancy.length + 1];
+                    for (int day = 0; day < occupancy.length; day++) {
+                        occupiedBefore[day + 1] = occupiedBefore[day] + occupancy[day];
+                    }
+
+                    final boolean[] available = new boolean[ranges.size()];
+                    for (int i = 0; i < ranges.size(); i++) {
+                        final AvailabilityQuery range = ranges.get(i);
+                        final int start = (int) ChronoUnit.DAYS.between(first, range.getFrom());
+                        final int end = (int) ChronoUnit.DAYS.between(first, range.getTo());
+                        available[i] = occupiedBefore[end + 1] - occupiedBefore[start] == 0;
+                    }
+
+                    return new AvailabilityBatchResponse(first, occupancy, available);
+                });
+    }
+
     @Override
     public Mono<Reservation> makeReservation(Reservation reservation) {
-        return isReservationTaken(reservation.getFrom(), reservation.getTo())
+        return findReservationTaken(reservation.getFrom(), reservation.getTo())
                 .flatMap(isTaken -> {
                     if (isTaken) {
                         return Mono.empty();
                     } else {
                         return reservationRepository.save(reservation);
                     }
-                });
+                })
+                .doOnNext(saved -> eventPublisher.publishEvent(new ReservationChangedEvent(null, saved)));
     }
 
     @Override
     public Mono<Reservation> updateReservation(String id, Reservation reservation) {
-        return deleteReservation(id)
+        return removeReservation(id)
                 .flatMap(deletedReservation -> {
                     final var updated = new Reservation();
                     updated.setId(deletedReservation.getId());
@@ -107,19 +176,26 @@ public class ReservationServiceImpl implements ReservationService {
                     updated.setFrom(reservation.getFrom());
                     updated.setTo(reservation.getTo());
 
-                    return Mono.zip(Mono.just(deletedReservation), Mono.just(updated), isReservationTaken(updated.getFrom(), updated.getTo()));
+                    return Mono.zip(Mono.just(deletedReservation), Mono.just(updated), findReservationTaken(updated.getFrom(), updated.getTo()));
                 })
                 .flatMap(tuple -> {
+                    final Mono<Reservation> save;
                     if (tuple.getT3()) {
-                        return reservationRepository.save(tuple.getT1());
+                        save = reservationRepository.save(tuple.getT1());
                     } else {
-                        return reservationRepository.save(tuple.getT2());
+                        save = reservationRepository.save(tuple.getT2());
                     }
+                    return save.doOnNext(saved -> eventPublisher.publishEvent(new ReservationChangedEvent(tuple.getT1(), saved)));
                 });
     }
 
     @Override
     public Mono<Reservation> deleteReservation(String id) {
+        return removeReservation(id)
+                .doOnNext(deleted -> eventPublisher.publishEvent(new ReservationChangedEvent(deleted, null)));
+    }
+
+    private Mono<Reservation> removeReservation(String id) {
         return reservationRepository
                 .findById(id)
                 .flatMap(reservation ->
@@ -129,7 +205,7 @@ public class ReservationServiceImpl implements ReservationService {
 
     @Override
     public Flux<Reservation> getReservationsForUser(String user) {
-        return reservationRepository.findAllByUser(user);
+        return userReservationCache.get(user, reservationRepository::findAllByUser);
     }
 
     @Override
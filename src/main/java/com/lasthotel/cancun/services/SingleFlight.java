@@ -0,0 +1,99 @@
+package com.lasthotel.cancun.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into a single upstream {@link Mono}.
+ * <p>
+ * The first caller for a key starts the upstream call, and callers arriving while it is still in flight share its
+ * result, including errors. Once it terminates the key is released, so nothing is cached beyond the call itself.
+ * Keys are spread over several lock-free maps to keep contention between unrelated keys low.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Mono<V>>[] stripes;
+    private final Counter misses;
+    private final Counter hits;
+
+    @SuppressWarnings("unchecked")
+    public SingleFlight(String name, int stripeCount, MeterRegistry meterRegistry) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two, got " + stripeCount);
+        }
+
+        this.stripes = new ConcurrentMap[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+
+        this.misses = Counter.builder("cancun.singleflight.calls")
+                .tag("name", name)
+                .tag("result", "miss")
+                .description("Calls that started an upstream query")
+                .register(meterRegistry);
+        this.hits = Counter.builder("cancun.singleflight.calls")
+                .tag("name", name)
+                .tag("result", "hit")
+                .description("Calls that joined an in-flight query, i.e. saved queries")
+                .register(meterRegistry);
+        Gauge.builder("cancun.singleflight.hit.ratio", this, SingleFlight::hitRatio)
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("cancun.singleflight.in.flight", this, SingleFlight::inFlight)
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> upstream) {
+        return Mono.defer(() -> {
+            final ConcurrentMap<K, Mono<V>> stripe = stripeFor(key);
+
+            final Mono<V> inFlight = stripe.get(key);
+            if (inFlight != null) {
+                hits.increment();
+                return inFlight;
+            }
+
+            final AtomicReference<Mono<V>> self = new AtomicReference<>();
+            final Mono<V> shared = Mono.defer(upstream)
+                    .doFinally(signal -> stripe.remove(key, self.get()))
+                    .cache();
+            self.set(shared);
+
+            final Mono<V> existing = stripe.putIfAbsent(key, shared);
+            if (existing != null) {
+                hits.increment();
+                return existing;
+            }
+
+            misses.increment();
+            return shared;
+        });
+    }
+
+    private ConcurrentMap<K, Mono<V>> stripeFor(K key) {
+        final int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private double hitRatio() {
+        final double hitCount = hits.count();
+        final double total = hitCount + misses.count();
+        return total == 0 ? 0 : hitCount / total;
+    }
+
+    private double inFlight() {
+        long count = 0;
+        for (ConcurrentMap<K, Mono<V>> stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,98 @@
+package com.lasthotel.cancun.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts spans to an OTLP/HTTP collector using the JSON encoding, e.g. a local OpenTelemetry collector on port 4318.
+ */
+public class OtlpHttpSpanExporter implements SpanExporter {
+    private static final Logger log = LoggerFactory.getLogger(OtlpHttpSpanExporter.class);
+
+    private static final int STATUS_CODE_ERROR = 2;
+
+    private final URI endpoint;
+    private final String serviceName;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    public OtlpHttpSpanExporter(URI endpoint, String serviceName, ObjectMapper objectMapper) {
+        this.endpoint = endpoint;
+        this.serviceName = serviceName;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void export(List<Span> spans) throws IOException {
+        final HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(Duration.ofSeconds(5))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(toRequest(spans))))
+                .build();
+
+        try {
+            final HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                log.warn("Collector at {} rejected {} spans with status {}", endpoint, spans.size(), response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting spans", e);
+        }
+    }
+
+    private Map<String, Object> toRequest(List<Span> spans) {
+        final List<Map<String, Object>> otlpSpans = new ArrayList<>(spans.size());
+        for (Span span : spans) {
+            otlpSpans.add(toOtlp(span));
+        }
+
+        return Map.of("resourceSpans", List.of(Map.of(
+                "resource", Map.of("attributes", List.of(attribute("service.name", serviceName))),
+                "scopeSpans", List.of(Map.of(
+                        "scope", Map.of("name", "com.lasthotel.cancun"),
+                        "spans", otlpSpans
+                ))
+        )));
+    }
+
+    private static Map<String, Object> toOtlp(Span span) {
+        final Map<String, Object> otlp = new LinkedHashMap<>();
+        otlp.put("traceId", span.getTraceId());
+        otlp.put("spanId", span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            otlp.put("parentSpanId", span.getParentSpanId());
+        }
+        otlp.put("name", span.getName());
+        otlp.put("kind", span.getKind().ordinal() + 1);
+        otlp.put("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+        otlp.put("endTimeUnixNano", Long.toString(span.getStartEpochNanos() + span.getDurationNanos()));
+
+        final List<Map<String, Object>> attributes = new ArrayList<>();
+        span.getAttributes().forEach((key, value) -> attributes.add(attribute(key, value)));
+        otlp.put("attributes", attributes);
+
+        if (span.getError() != null) {
+            otlp.put("status", Map.of("code", STATUS_CODE_ERROR, "message", span.getError()));
+        }
+        return otlp;
+    }
+
+    private static Map<String, Object> attribute(String key, String value) {
+        return Map.of("key", key, "value", Map.of("stringValue", value));
+    }
+}
@@ -0,0 +1,105 @@
+package com.lasthotel.cancun.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends spans as JSON lines. Once the file would exceed its size limit it is renamed to {@code <file>.1}, older
+ * files shift up by one and the oldest is deleted.
+ */
+public class RollingFileSpanExporter implements SpanExporter {
+    private final Path file;
+    private final long maxFileSizeBytes;
+    private final int maxFiles;
+    private final ObjectMapper objectMapper;
+
+    private BufferedWriter writer;
+    private long written;
+
+    public RollingFileSpanExporter(Path file, long maxFileSizeBytes, int maxFiles, ObjectMapper objectMapper) {
+        this.file = file;
+        this.maxFileSizeBytes = maxFileSizeBytes;
+        this.maxFiles = maxFiles;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void export(List<Span> spans) throws IOException {
+        if (writer == null) {
+            open();
+        }
+
+        for (Span span : spans) {
+            final String line = objectMapper.writeValueAsString(toJson(span)) + "\n";
+            final int length = line.getBytes(StandardCharsets.UTF_8).length;
+            if (written > 0 && written + length > maxFileSizeBytes) {
+                roll();
+            }
+            writer.write(line);
+            written += length;
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void open() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        written = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        close();
+        Files.deleteIfExists(rolled(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rolled(i))) {
+                Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        open();
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private static Map<String, Object> toJson(Span span) {
+        final Map<String, Object> json = new LinkedHashMap<>();
+        json.put("traceId", span.getTraceId());
+        json.put("spanId", span.getSpanId());
+        json.put("parentSpanId", span.getParentSpanId());
+        json.put("name", span.getName());
+        json.put("kind", span.getKind());
+        json.put("start", Instant.ofEpochSecond(0, span.getStartEpochNanos()).toString());
+        json.put("durationMicros", TimeUnit.NANOSECONDS.toMicros(span.getDurationNanos()));
+        json.put("attributes", span.getAttributes());
+        json.put("error", span.getError());
+        return json;
+    }
+}
@@ -0,0 +1,135 @@
+package com.lasthotel.cancun.tracing;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timed operation within a trace. Ids follow the W3C trace context format: 32 hex characters for the trace,
+ * 16 for the span.
+ */
+public class Span {
+    // Declared in the same order as the OTLP span kinds, which start at 1
+    public enum Kind {
+        INTERNAL,
+        SERVER,
+        CLIENT
+    }
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final Kind kind;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+    private final Map<String, String> attributes = new ConcurrentHashMap<>();
+
+    private volatile String name;
+    private volatile long durationNanos = -1;
+    private volatile String error;
+
+    private Span(String traceId, String parentSpanId, String name, Kind kind) {
+        final Instant now = Instant.now();
+        this.traceId = traceId;
+        this.spanId = randomHex(1);
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startEpochNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+        this.startNanoTime = System.nanoTime();
+    }
+
+    public static Span root(String name, Kind kind) {
+        return new Span(randomHex(2), null, name, kind);
+    }
+
+    /**
+     * Starts a span whose parent lives in another process, as described by an incoming {@code traceparent} header.
+     */
+    public static Span remoteChild(String traceId, String parentSpanId, String name, Kind kind) {
+        return new Span(traceId, parentSpanId, name, kind);
+    }
+
+    public Span child(String name, Kind kind) {
+        return new Span(traceId, spanId, name, kind);
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setAttribute(String key, String value) {
+        if (value != null) {
+            attributes.put(key, value);
+        }
+    }
+
+    public void setError(Throwable error) {
+        this.error = error.getClass().getName() + ": " + error.getMessage();
+    }
+
+    public void end() {
+        if (durationNanos < 0) {
+            durationNanos = System.nanoTime() - startNanoTime;
+        }
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    private static String randomHex(int longs) {
+        final StringBuilder hex = new StringBuilder(longs * 16);
+        for (int i = 0; i < longs; i++) {
+            final String part = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            hex.append("0".repeat(16 - part.length())).append(part);
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" +
+                "traceId='" + traceId + '\'' +
+                ", spanId='" + spanId + '\'' +
+                ", parentSpanId='" + parentSpanId + '\'' +
+                ", name='" + name + '\'' +
+                ", kind=" + kind +
+                ", durationNanos=" + durationNanos +
+                '}';
+    }
+}
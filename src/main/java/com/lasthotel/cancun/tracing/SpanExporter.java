@@ -0,0 +1,14 @@
+package com.lasthotel.cancun.tracing;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Ships finished spans out of the process. Called from a single background thread, so it may block.
+ */
+public interface SpanExporter {
+    void export(List<Span> spans) throws IOException;
+
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,154 @@
+package com.lasthotel.cancun.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates spans and carries the current one through the Reactor {@link reactor.util.context.Context}.
+ * <p>
+ * Only the {@link TracingWebFilter} decides whether a request is sampled. Everything downstream just looks for a
+ * span in the context and passes the publisher through untouched when there is none, so unsampled requests pay
+ * for a context lookup and nothing else. Finished spans are exported in batches from a background thread, started
+ * with the first finished span.
+ */
+public class Tracer {
+    public static final String CONTEXT_KEY = Span.class.getName();
+
+    private static final Logger log = LoggerFactory.getLogger(Tracer.class);
+    private static final int EXPORT_BATCH_SIZE = 512;
+
+    private final double sampleRate;
+    private final SpanExporter exporter;
+    private final long exportIntervalMillis;
+    private final BlockingQueue<Span> finished;
+    private final Counter droppedSpans;
+    private final Object exportLock = new Object();
+
+    private volatile ScheduledExecutorService exportExecutor;
+    private boolean closed;
+
+    public Tracer(TracingProperties properties, SpanExporter exporter, MeterRegistry meterRegistry) {
+        this.sampleRate = properties.getSampleRate();
+        this.exporter = exporter;
+        this.exportIntervalMillis = properties.getExportInterval().toMillis();
+        this.finished = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.droppedSpans = Counter.builder("cancun.tracing.dropped.spans").register(meterRegistry);
+    }
+
+    public boolean shouldSample() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public <T> Mono<T> trace(String name, Span.Kind kind, Mono<T> mono) {
+        return Mono.deferContextual(context -> {
+            final Span parent = context.getOrDefault(CONTEXT_KEY, null);
+            if (parent == null) {
+                return mono;
+            }
+
+            final Span span = parent.child(name, kind);
+            return mono
+                    .doOnError(span::setError)
+                    .doFinally(signal -> finish(span, signal))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, span));
+        });
+    }
+
+    public <T> Flux<T> trace(String name, Span.Kind kind, Flux<T> flux) {
+        return Flux.deferContextual(context -> {
+            final Span parent = context.getOrDefault(CONTEXT_KEY, null);
+            if (parent == null) {
+                return flux;
+            }
+
+            final Span span = parent.child(name, kind);
+            return flux
+                    .doOnError(span::setError)
+                    .doFinally(signal -> finish(span, signal))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, span));
+        });
+    }
+
+    public void finish(Span span, SignalType signal) {
+        if (signal == SignalType.CANCEL) {
+            span.setAttribute("cancelled", "true");
+        }
+        span.end();
+        if (!finished.offer(span)) {
+            droppedSpans.increment();
+        }
+        if (exportExecutor == null) {
+            startExport();
+        }
+    }
+
+    public void close() {
+        final ScheduledExecutorService executor;
+        synchronized (exportLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            executor = exportExecutor;
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        export();
+        try {
+            exporter.close();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not close span exporter", e);
+        }
+    }
+
+    boolean isExportStarted() {
+        return exportExecutor != null;
+    }
+
+    private void startExport() {
+        synchronized (exportLock) {
+            if (exportExecutor != null || closed) {
+                return;
+            }
+            final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                    new CustomizableThreadFactory("span-export-"));
+            executor.scheduleWithFixedDelay(this::export, exportIntervalMillis, exportIntervalMillis, TimeUnit.MILLISECONDS);
+            exportExecutor = executor;
+        }
+    }
+
+    private void export() {
+        final List<Span> batch = new ArrayList<>(EXPORT_BATCH_SIZE);
+        while (finished.drainTo(batch, EXPORT_BATCH_SIZE) > 0) {
+            try {
+                exporter.export(batch);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not export {} spans", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+}
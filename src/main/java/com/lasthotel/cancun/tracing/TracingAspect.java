@@ -0,0 +1,41 @@
+package com.lasthotel.cancun.tracing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Adds a child span around every {@code ReservationServiceImpl} method and every repository call. Each repository
+ * call maps to one Mongo command, and the spans are created when the returned publisher is subscribed, so they
+ * time the actual work rather than the assembly of the reactive chain.
+ */
+@Aspect
+public class TracingAspect {
+    private final Tracer tracer;
+
+    public TracingAspect(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("execution(public * com.lasthotel.cancun.services.ReservationServiceImpl.*(..))")
+    public Object traceService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace("ReservationService." + joinPoint.getSignature().getName(), Span.Kind.INTERNAL, joinPoint.proceed());
+    }
+
+    @Around("target(com.lasthotel.cancun.repositories.ReservationRepository)")
+    public Object traceRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace("mongo." + joinPoint.getSignature().getName(), Span.Kind.CLIENT, joinPoint.proceed());
+    }
+
+    private Object trace(String name, Span.Kind kind, Object result) {
+        if (result instanceof Mono) {
+            return tracer.trace(name, kind, (Mono<?>) result);
+        }
+        if (result instanceof Flux) {
+            return tracer.trace(name, kind, (Flux<?>) result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+package com.lasthotel.cancun.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(prefix = "cancun.tracing", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(TracingProperties.class)
+public class TracingConfig {
+
+    @Bean
+    public SpanExporter spanExporter(TracingProperties properties, ObjectMapper objectMapper) {
+        switch (properties.getExporter()) {
+            case OTLP:
+                return new OtlpHttpSpanExporter(URI.create(properties.getOtlpEndpoint()), properties.getServiceName(), objectMapper);
+            case FILE:
+                return new RollingFileSpanExporter(Path.of(properties.getFile()), properties.getMaxFileSizeBytes(), properties.getMaxFiles(), objectMapper);
+            default:
+                return spans -> {
+                };
+        }
+    }
+
+    @Bean(destroyMethod = "close")
+    public Tracer tracer(TracingProperties properties, SpanExporter spanExporter, MeterRegistry meterRegistry) {
+        return new Tracer(properties, spanExporter, meterRegistry);
+    }
+
+    @Bean
+    public TracingWebFilter tracingWebFilter(Tracer tracer) {
+        return new TracingWebFilter(tracer);
+    }
+
+    @Bean
+    public TracingAspect tracingAspect(Tracer tracer) {
+        return new TracingAspect(tracer);
+    }
+}
@@ -0,0 +1,123 @@
+package com.lasthotel.cancun.tracing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "cancun.tracing")
+public class TracingProperties {
+    public enum Exporter {
+        FILE,
+        OTLP,
+        NONE
+    }
+
+    private boolean enabled = true;
+
+    /**
+     * Share of requests traced, between 0 and 1. Requests carrying a sampled W3C traceparent header are always traced.
+     */
+    private double sampleRate = 0;
+
+    private Exporter exporter = Exporter.FILE;
+
+    private String file = "logs/traces.jsonl";
+
+    private long maxFileSizeBytes = 10 * 1024 * 1024;
+
+    /**
+     * Number of rolled files kept besides the active one.
+     */
+    private int maxFiles = 5;
+
+    private String otlpEndpoint = "http://localhost:4318/v1/traces";
+
+    private String serviceName = "cancun";
+
+    /**
+     * Finished spans waiting for export, spans beyond this are dropped.
+     */
+    private int queueCapacity = 4096;
+
+    private Duration exportInterval = Duration.ofSeconds(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public Exporter getExporter() {
+        return exporter;
+    }
+
+    public void setExporter(Exporter exporter) {
+        this.exporter = exporter;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public long getMaxFileSizeBytes() {
+        return maxFileSizeBytes;
+    }
+
+    public void setMaxFileSizeBytes(long maxFileSizeBytes) {
+        this.maxFileSizeBytes = maxFileSizeBytes;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
+    public String getOtlpEndpoint() {
+        return otlpEndpoint;
+    }
+
+    public void setOtlpEndpoint(String otlpEndpoint) {
+        this.otlpEndpoint = otlpEndpoint;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getExportInterval() {
+        return exportInterval;
+    }
+
+    public void setExportInterval(Duration exportInterval) {
+        this.exportInterval = exportInterval;
+    }
+}
@@ -0,0 +1,69 @@
+package com.lasthotel.cancun.tracing;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Opens the root span of every sampled request and names it after the matched route, e.g.
+ * {@code PUT /reservation/{id}}. An incoming W3C {@code traceparent} header continues the caller's trace and
+ * its sampled flag takes precedence over the local sample rate.
+ */
+public class TracingWebFilter implements WebFilter, Ordered {
+    private static final Pattern TRACEPARENT = Pattern.compile("^00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})$");
+
+    private final Tracer tracer;
+
+    public TracingWebFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final Span span = startSpan(exchange.getRequest());
+        if (span == null) {
+            return chain.filter(exchange);
+        }
+
+        return chain.filter(exchange)
+                .doOnError(span::setError)
+                .doFinally(signal -> {
+                    final ServerHttpRequest request = exchange.getRequest();
+                    final Object route = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    span.setName(request.getMethodValue() + " " + (route == null ? request.getPath().value() : route.toString()));
+                    span.setAttribute("http.method", request.getMethodValue());
+                    span.setAttribute("http.target", request.getURI().getRawPath());
+                    span.setAttribute("http.route", route == null ? null : route.toString());
+                    final Integer status = exchange.getResponse().getRawStatusCode();
+                    span.setAttribute("http.status_code", status == null ? null : status.toString());
+                    tracer.finish(span, signal);
+                })
+                .contextWrite(context -> context.put(Tracer.CONTEXT_KEY, span));
+    }
+
+    private Span startSpan(ServerHttpRequest request) {
+        final String name = request.getMethodValue() + " " + request.getPath().value();
+        final String traceparent = request.getHeaders().getFirst("traceparent");
+        if (traceparent != null) {
+            final Matcher matcher = TRACEPARENT.matcher(traceparent);
+            if (matcher.matches()) {
+                final boolean sampled = (Integer.parseInt(matcher.group(3), 16) & 1) == 1;
+                return sampled ? Span.remoteChild(matcher.group(1), matcher.group(2), name, Span.Kind.SERVER) : null;
+            }
+        }
+
+        return tracer.shouldSample() ? Span.root(name, Span.Kind.SERVER) : null;
+    }
+}
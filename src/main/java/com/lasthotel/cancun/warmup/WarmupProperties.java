@@ -0,0 +1,80 @@
+package com.lasthotel.cancun.warmup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "cancun.warmup")
+public class WarmupProperties {
+    private boolean enabled = true;
+
+    /**
+     * Number of rounds of synthetic traffic to send before reporting ready.
+     */
+    private int rounds = 20;
+
+    /**
+     * Number of concurrent calls per route in each round.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Number of Mongo connections to open before the first real request arrives.
+     */
+    private int mongoConnections = 10;
+
+    private Duration requestTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Upper bound for the whole warm-up, after which the application reports ready regardless.
+     */
+    private Duration timeout = Duration.ofSeconds(60);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMongoConnections() {
+        return mongoConnections;
+    }
+
+    public void setMongoConnections(int mongoConnections) {
+        this.mongoConnections = mongoConnections;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
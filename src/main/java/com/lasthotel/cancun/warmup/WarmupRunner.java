@@ -0,0 +1,200 @@
+package com.lasthotel.cancun.warmup;
+
+import com.lasthotel.cancun.models.Reservation;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends synthetic, read-only traffic through the running server before the application reports ready.
+ * <p>
+ * Spring Boot only moves the readiness state to {@code ACCEPTING_TRAFFIC} once every {@link ApplicationRunner}
+ * has returned, so blocking here keeps the instance out of the load balancer until the routes, the Jackson and
+ * Mongo codecs and the Mongo connection pool are warm. No request sent here can write: creations use an invalid
+ * date range, and updates and deletes target an id that does not exist.
+ */
+@Component
+@Profile("!test")
+@EnableConfigurationProperties(WarmupProperties.class)
+public class WarmupRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+    private static final String WARMUP_USER = "__warmup__";
+
+    private final WarmupProperties properties;
+    private final WebClient.Builder webClientBuilder;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Environment environment;
+    private final Clock clock;
+
+    private final AtomicLong durationMillis = new AtomicLong();
+    private final AtomicLong firstRoundLatencyMicros = new AtomicLong();
+    private final AtomicLong lastRoundLatencyMicros = new AtomicLong();
+
+    @Autowired
+    public WarmupRunner(WarmupProperties properties,
+                        WebClient.Builder webClientBuilder,
+                        ReactiveMongoTemplate mongoTemplate,
+                        Environment environment,
+                        Clock clock,
+                        MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.webClientBuilder = webClientBuilder;
+        this.mongoTemplate = mongoTemplate;
+        this.environment = environment;
+        this.clock = clock;
+
+        Gauge.builder("cancun.warmup.duration", durationMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("cancun.warmup.latency", firstRoundLatencyMicros, AtomicLong::get)
+                .tag("round", "first")
+                .baseUnit("microseconds")
+                .register(meterRegistry);
+        Gauge.builder("cancun.warmup.latency", lastRoundLatencyMicros, AtomicLong::get)
+                .tag("round", "last")
+                .baseUnit("microseconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            log.info("Warm-up disabled");
+            return;
+        }
+
+        final Integer port = environment.getProperty("local.server.port", Integer.class);
+        if (port == null) {
+            log.warn("Warm-up skipped, no local server port available");
+            return;
+        }
+
+        final WebClient client = webClientBuilder.clone().baseUrl("http://localhost:" + port).build();
+        final long start = System.nanoTime();
+
+        try {
+            final List<Long> roundLatencies = openMongoConnections()
+                    .thenMany(Flux.range(0, properties.getRounds()).concatMap(round -> runRound(client)))
+                    .collectList()
+                    .block(properties.getTimeout());
+
+            if (roundLatencies != null && !roundLatencies.isEmpty()) {
+                firstRoundLatencyMicros.set(TimeUnit.NANOSECONDS.toMicros(roundLatencies.get(0)));
+                lastRoundLatencyMicros.set(TimeUnit.NANOSECONDS.toMicros(roundLatencies.get(roundLatencies.size() - 1)));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Warm-up did not complete, reporting ready anyway", e);
+        }
+
+        durationMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Warm-up finished in {} ms, mean latency {} us in the first round and {} us in the last",
+                durationMillis.get(), firstRoundLatencyMicros.get(), lastRoundLatencyMicros.get());
+    }
+
+    private Mono<Void> openMongoConnections() {
+        final int connections = properties.getMongoConnections();
+        return Flux.range(0, connections)
+                .flatMap(i -> mongoTemplate.executeCommand("{ ping: 1 }"), connections)
+                .then();
+    }
+
+    /**
+     * Runs every scenario {@code concurrency} times in parallel and returns the mean latency in nanoseconds.
+     */
+    private Mono<Long> runRound(WebClient client) {
+        exerciseMongoCodec();
+
+        final List<Supplier<Mono<?>>> scenarios = scenarios(client);
+        return Flux.range(0, properties.getConcurrency())
+                .flatMap(i -> Flux.fromIterable(scenarios).flatMap(this::timed))
+                .collectList()
+                .map(latencies -> (long) latencies.stream().mapToLong(Long::longValue).average().orElse(0));
+    }
+
+    private List<Supplier<Mono<?>>> scenarios(WebClient client) {
+        final LocalDate tomorrow = LocalDate.now(clock).plusDays(1);
+        final String missingId = "warmup-" + UUID.randomUUID();
+        final Reservation invalid = new Reservation(WARMUP_USER, tomorrow.plusDays(2), tomorrow);
+        final Reservation valid = new Reservation(WARMUP_USER, tomorrow, tomorrow.plusDays(2));
+
+        return List.of(
+                () -> client.get().uri("/reservation/all")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .retrieve()
+                        .bodyToFlux(Reservation.class)
+                        .then(),
+                () -> client.get().uri("/reservation/user/{userName}", WARMUP_USER)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .retrieve()
+                        .bodyToFlux(Reservation.class)
+                        .then(),
+                () -> client.get().uri(uriBuilder -> uriBuilder.path("/reservation")
+                        .queryParam("from", tomorrow)
+                        .queryParam("to", tomorrow.plusDays(2))
+                        .build())
+                        .accept(MediaType.TEXT_PLAIN)
+                        .retrieve()
+                        .bodyToMono(String.class),
+                // Rejected by date validation before reaching the service
+                () -> client.post().uri("/reservation")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .bodyValue(invalid)
+                        .exchangeToMono(ClientResponse::releaseBody),
+                // Looks up an id that does not exist, so nothing is deleted or saved
+                () -> client.put().uri("/reservation/{id}", missingId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .bodyValue(valid)
+                        .exchangeToMono(ClientResponse::releaseBody),
+                () -> client.delete().uri("/reservation/{id}", missingId)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .exchangeToMono(ClientResponse::releaseBody)
+        );
+    }
+
+    private Mono<Long> timed(Supplier<Mono<?>> scenario) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return scenario.get()
+                    .timeout(properties.getRequestTimeout())
+                    .onErrorResume(e -> {
+                        log.debug("Warm-up request failed", e);
+                        return Mono.empty();
+                    })
+                    .then(Mono.fromSupplier(() -> System.nanoTime() - start));
+        });
+    }
+
+    private void exerciseMongoCodec() {
+        final MongoConverter converter = mongoTemplate.getConverter();
+        final LocalDate tomorrow = LocalDate.now(clock).plusDays(1);
+        final Document document = new Document();
+        converter.write(new Reservation(WARMUP_USER, tomorrow, tomorrow.plusDays(2)), document);
+        converter.read(Reservation.class, document);
+    }
+}
@@ -0,0 +1,104 @@
+package com.lasthotel.cancun.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BulkheadsTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Bulkheads bulkheads;
+
+    @Test
+    public void when_queueIsFull_then_requestIsRejected() {
+        bulkheads = new Bulkheads(properties(10, 1, 1), meterRegistry);
+        final Sinks.Empty<Void> blocker = Sinks.empty();
+
+        final Disposable running = bulkheads.execute(RequestClass.READ, blocker::asMono).subscribe();
+        final Disposable queued = bulkheads.execute(RequestClass.READ, Mono::empty).subscribe();
+
+        StepVerifier.create(bulkheads.execute(RequestClass.READ, Mono::empty))
+                .expectError(BulkheadFullException.class)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, bulkheads.getInFlight(RequestClass.READ));
+        assertEquals(1, bulkheads.getQueued(RequestClass.READ));
+        assertEquals(1, meterRegistry.get("cancun.bulkhead.rejected").tag("reason", "queue_full").counter().count());
+
+        running.dispose();
+        queued.dispose();
+    }
+
+    @Test
+    public void when_capacityFreesUp_then_writesGoFirst() {
+        bulkheads = new Bulkheads(properties(1, 1, 10), meterRegistry);
+        final Sinks.Empty<Void> blocker = Sinks.empty();
+        final List<RequestClass> order = new CopyOnWriteArrayList<>();
+
+        bulkheads.execute(RequestClass.READ, blocker::asMono).subscribe();
+        final Mono<Void> read = bulkheads.execute(RequestClass.READ, () -> Mono.fromRunnable(() -> order.add(RequestClass.READ)));
+        final Mono<Void> write = bulkheads.execute(RequestClass.WRITE, () -> Mono.fromRunnable(() -> order.add(RequestClass.WRITE)));
+
+        StepVerifier.create(Mono.when(read, write))
+                .then(() -> {
+                    assertEquals(1, bulkheads.getQueued(RequestClass.READ));
+                    assertEquals(1, bulkheads.getQueued(RequestClass.WRITE));
+                    blocker.tryEmitEmpty();
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(List.of(RequestClass.WRITE, RequestClass.READ), order);
+        assertEquals(0, bulkheads.getInFlight(RequestClass.READ) + bulkheads.getInFlight(RequestClass.WRITE));
+    }
+
+    @Test
+    public void when_waitIsTooLong_then_requestIsRejectedAndDequeued() {
+        final BulkheadProperties properties = properties(1, 1, 10);
+        properties.getRead().setMaxWait(Duration.ofMillis(50));
+        bulkheads = new Bulkheads(properties, meterRegistry);
+        final Sinks.Empty<Void> blocker = Sinks.empty();
+
+        final Disposable running = bulkheads.execute(RequestClass.READ, blocker::asMono).subscribe();
+
+        StepVerifier.create(bulkheads.execute(RequestClass.READ, Mono::empty))
+                .expectError(BulkheadFullException.class)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(0, bulkheads.getQueued(RequestClass.READ));
+
+        running.dispose();
+        assertEquals(0, bulkheads.getInFlight(RequestClass.READ));
+    }
+
+    @Test
+    public void when_requestIsClassified_then_pathAndMethodDecide() {
+        final BulkheadProperties properties = new BulkheadProperties();
+        bulkheads = new Bulkheads(properties, meterRegistry);
+        final BulkheadWebFilter filter = new BulkheadWebFilter(bulkheads, properties);
+
+        assertEquals(RequestClass.READ, filter.classify(HttpMethod.GET, PathContainer.parsePath("/reservation/all")));
+        assertEquals(RequestClass.READ, filter.classify(HttpMethod.POST, PathContainer.parsePath("/reservation/availability")));
+        assertEquals(RequestClass.WRITE, filter.classify(HttpMethod.POST, PathContainer.parsePath("/reservation")));
+        assertEquals(RequestClass.WRITE, filter.classify(HttpMethod.DELETE, PathContainer.parsePath("/reservation/abc")));
+        assertEquals(RequestClass.ADMIN, filter.classify(HttpMethod.GET, PathContainer.parsePath("/actuator/metrics")));
+    }
+
+    private static BulkheadProperties properties(int maxConcurrent, int maxConcurrentPerClass, int maxQueued) {
+        final BulkheadProperties properties = new BulkheadProperties();
+        properties.setMaxConcurrent(maxConcurrent);
+        for (RequestClass requestClass : RequestClass.values()) {
+            properties.limits(requestClass).setMaxConcurrent(maxConcurrentPerClass);
+            properties.limits(requestClass).setMaxQueued(maxQueued);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,363 @@
+package com.lasthotel.cancun.coherence;
+
+import com.lasthotel.cancun.eventlog.ReservationEventLog;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.nearcache.NearCacheProperties;
+import com.lasthotel.cancun.nearcache.UserReservationCache;
+import com.lasthotel.cancun.services.ReservationChangedEvent;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CacheCoherenceBusStreamTest {
+    private static final String RESERVATIONS = "reservations";
+    private static final String INVALIDATIONS = "invalidations";
+    private static final LocalDate DAY = LocalDate.of(2021, 7, 10);
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<InvalidationEvent> events = new CopyOnWriteArrayList<>();
+    private final List<ChangeStreamOptions> changeStreamOptions = new CopyOnWriteArrayList<>();
+    private final List<Document> inserted = new CopyOnWriteArrayList<>();
+    private final CoherenceProperties properties = new CoherenceProperties();
+    private final MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    private final MongoMappingContext mappingContext = new MongoMappingContext();
+    private final MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+
+    private ObjectProvider<InvalidationListener> listeners;
+    private ObjectProvider<ReservationEventLog> eventLogs;
+    private CacheCoherenceBus bus;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        properties.setRetryDelay(Duration.ofMillis(10));
+
+        when(mongoTemplate.getCollectionName(Reservation.class)).thenReturn(RESERVATIONS);
+        when(mongoTemplate.find(any(Query.class), eq(Reservation.class), eq(RESERVATIONS))).thenReturn(Flux.empty());
+        when(mongoTemplate.collectionExists(INVALIDATIONS)).thenReturn(Mono.just(true));
+        when(mongoTemplate.insert(any(Document.class), eq(INVALIDATIONS))).thenAnswer(invocation -> {
+            final Document document = invocation.getArgument(0);
+            inserted.add(document);
+            return Mono.just(document);
+        });
+
+        eventLogs = mock(ObjectProvider.class);
+        listeners = mock(ObjectProvider.class);
+        when(listeners.orderedStream()).thenAnswer(invocation -> Stream.of((InvalidationListener) events::add));
+        bus = new CacheCoherenceBus(properties, mongoTemplate, listeners, eventLogs, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bus.stop();
+    }
+
+    @Test
+    public void when_otherNodeWrites_then_changeStreamEventIsDispatched() {
+        final Reservation reservation = reservation("bob", DAY);
+        changeStream(Flux.just(event(OperationType.INSERT, reservation)));
+
+        bus.start();
+
+        awaitUntil(() -> events.stream().anyMatch(event -> event.affectsUser("bob") && !event.isFullResync()));
+        assertTrue(events.get(0).isFullResync());
+        assertFalse(events.get(1).isLocal());
+        assertTrue(events.get(1).affectsDates(DAY, DAY));
+        assertEquals(1, meterRegistry.get("cancun.coherence.events").tag("source", "remote").counter().count());
+    }
+
+    @Test
+    public void when_changeStreamEchoesLocalWrites_then_theyAreNotDispatchedAgain() {
+        final Sinks.Many<ChangeStreamEvent<Reservation>> stream = Sinks.many().unicast().onBackpressureBuffer();
+        changeStream(stream.asFlux());
+        bus.start();
+        awaitUntil(() -> !events.isEmpty());
+
+        final Reservation created = reservation("bob", DAY);
+        final Reservation updated = reservation("bob", DAY.plusDays(3));
+        updated.setId(created.getId());
+        bus.onReservationChanged(new ReservationChangedEvent(null, created));
+        bus.onReservationChanged(new ReservationChangedEvent(created, updated));
+        stream.tryEmitNext(event(OperationType.INSERT, created));
+        stream.tryEmitNext(event(OperationType.DELETE, created));
+        stream.tryEmitNext(event(OperationType.INSERT, updated));
+        stream.tryEmitNext(event(OperationType.INSERT, reservation("carol", DAY.plusDays(6))));
+
+        awaitUntil(() -> events.stream().anyMatch(event -> event.affectsUser("carol") && !event.isFullResync()));
+        assertEquals(1, events.stream().filter(event -> !event.isLocal() && !event.isFullResync()).count());
+        assertEquals(1, meterRegistry.get("cancun.coherence.events").tag("source", "remote").counter().count());
+    }
+
+    @Test
+    public void when_changeStreamEchoesLocalWrites_then_nearCacheKeepsTheUser() {
+        final UserReservationCache nearCache = new UserReservationCache(new NearCacheProperties(), meterRegistry);
+        when(listeners.orderedStream()).thenAnswer(invocation -> Stream.of(nearCache, (InvalidationListener) events::add));
+        final Sinks.Many<ChangeStreamEvent<Reservation>> stream = Sinks.many().unicast().onBackpressureBuffer();
+        changeStream(stream.asFlux());
+        bus.start();
+        awaitUntil(() -> !events.isEmpty());
+
+        final AtomicInteger loads = new AtomicInteger();
+        final Function<String, Flux<Reservation>> loader = user -> Flux.defer(() -> {
+            loads.incrementAndGet();
+            return Flux.empty();
+        });
+        nearCache.get("bob", loader).blockLast();
+
+        final Reservation created = reservation("bob", DAY);
+        final ReservationChangedEvent change = new ReservationChangedEvent(null, created);
+        bus.onReservationChanged(change);
+        nearCache.onReservationChanged(change);
+        stream.tryEmitNext(event(OperationType.INSERT, created));
+        stream.tryEmitNext(event(OperationType.INSERT, reservation("carol", DAY.plusDays(6))));
+        awaitUntil(() -> events.stream().anyMatch(event -> event.affectsUser("carol") && !event.isFullResync()));
+
+        StepVerifier.create(nearCache.get("bob", loader))
+                .expectNext(created)
+                .verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void when_deletedReservationIsNotRemembered_then_everythingIsInvalidated() {
+        properties.setMaxKnownReservations(1);
+        bus = new CacheCoherenceBus(properties, mongoTemplate, listeners, eventLogs, meterRegistry);
+        final Reservation first = reservation("bob", DAY);
+        final Reservation second = reservation("carol", DAY.plusDays(3));
+        changeStream(Flux.just(
+                event(OperationType.INSERT, first),
+                event(OperationType.INSERT, second),
+                event(OperationType.DELETE, second),
+                event(OperationType.DELETE, first)));
+
+        bus.start();
+
+        awaitUntil(() -> events.size() == 5);
+        assertEquals(Set.of("carol"), events.get(3).getUsers());
+        assertNull(events.get(4).getUsers());
+        assertTrue(events.get(4).affectsDates(DAY.minusYears(1), DAY.minusYears(1)));
+    }
+
+    @Test
+    public void when_eventLogIsPresent_then_startupSeedsFromIt() {
+        final Reservation logged = reservation("bob", DAY);
+        final ReservationEventLog eventLog = mock(ReservationEventLog.class);
+        when(eventLog.getState()).thenReturn(Map.of(logged.getId(), logged));
+        when(eventLogs.getIfAvailable()).thenReturn(eventLog);
+        changeStream(Flux.just(event(OperationType.DELETE, logged)));
+
+        bus.start();
+
+        awaitUntil(() -> events.size() == 2);
+        assertEquals(Set.of("bob"), events.get(1).getUsers());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Reservation.class), eq(RESERVATIONS));
+    }
+
+    @Test
+    public void when_resumeTokenIsLost_then_listenersAreResynced() {
+        final AtomicInteger calls = new AtomicInteger();
+        when(mongoTemplate.changeStream(eq(RESERVATIONS), any(ChangeStreamOptions.class), eq(Reservation.class)))
+                .thenAnswer(invocation -> {
+                    changeStreamOptions.add(invocation.getArgument(1));
+                    return calls.incrementAndGet() == 1
+                            ? Flux.just(event(OperationType.INSERT, reservation("bob", DAY))).concatWith(Flux.error(commandError(286)))
+                            : Flux.never();
+                });
+
+        bus.start();
+
+        awaitUntil(() -> changeStreamOptions.size() == 2);
+        assertFalse(changeStreamOptions.get(1).getResumeToken().isPresent());
+        assertEquals(2, meterRegistry.get("cancun.coherence.resyncs").counter().count());
+        assertEquals(2, events.stream().filter(InvalidationEvent::isFullResync).count());
+    }
+
+    @Test
+    public void when_changeStreamFailsTransiently_then_itResumesWithoutResync() {
+        final AtomicInteger calls = new AtomicInteger();
+        final ChangeStreamEvent<Reservation> first = event(OperationType.INSERT, reservation("bob", DAY));
+        when(mongoTemplate.changeStream(eq(RESERVATIONS), any(ChangeStreamOptions.class), eq(Reservation.class)))
+                .thenAnswer(invocation -> {
+                    changeStreamOptions.add(invocation.getArgument(1));
+                    return calls.incrementAndGet() == 1
+                            ? Flux.just(first).concatWith(Flux.error(commandError(6)))
+                            : Flux.never();
+                });
+
+        bus.start();
+
+        awaitUntil(() -> changeStreamOptions.size() == 2);
+        assertEquals(first.getResumeToken(), changeStreamOptions.get(1).getResumeToken().orElseThrow());
+        assertEquals(1, meterRegistry.get("cancun.coherence.resyncs").counter().count());
+    }
+
+    @Test
+    public void when_changeStreamsRequireReplicaSet_then_cappedCollectionIsUsed() {
+        assertFallsBackToCappedCollection(40573);
+    }
+
+    @Test
+    public void when_changeStreamStageIsUnknown_then_cappedCollectionIsUsed() {
+        assertFallsBackToCappedCollection(40324);
+    }
+
+    @Test
+    public void when_cappedPositionIsLost_then_listenersAreResynced() {
+        properties.setMode(CoherenceProperties.Mode.CAPPED);
+        final AtomicInteger calls = new AtomicInteger();
+        when(mongoTemplate.exists(any(Query.class), eq(INVALIDATIONS))).thenReturn(Mono.just(false));
+        when(mongoTemplate.tail(any(Query.class), eq(Document.class), eq(INVALIDATIONS))).thenAnswer(invocation -> {
+            final Flux<Document> fromMarker = Flux.defer(() -> Flux.just(inserted.get(inserted.size() - 1)));
+            return calls.incrementAndGet() == 1
+                    ? fromMarker.concatWith(Flux.error(commandError(136)))
+                    : fromMarker.concatWith(Flux.just(change("dave", "other-node"))).concatWith(Flux.never());
+        });
+
+        bus.start();
+
+        awaitUntil(() -> events.stream().anyMatch(event -> event.affectsUser("dave") && !event.isFullResync()));
+        assertEquals(1, meterRegistry.get("cancun.coherence.resyncs").counter().count());
+        assertTrue(events.get(0).isFullResync());
+        assertEquals(2, inserted.size());
+    }
+
+    private void assertFallsBackToCappedCollection(int code) {
+        properties.setMode(CoherenceProperties.Mode.AUTO);
+        changeStream(Flux.error(commandError(code)));
+        when(mongoTemplate.tail(any(Query.class), eq(Document.class), eq(INVALIDATIONS))).thenReturn(Flux.defer(() -> Flux.just(
+                inserted.get(0),
+                change("bob", inserted.get(0).getString("origin")),
+                change("dave", "other-node"))).concatWith(Flux.never()));
+
+        bus.start();
+
+        awaitUntil(() -> events.stream().anyMatch(event -> event.affectsUser("dave")));
+        assertEquals(CoherenceProperties.Mode.CAPPED, bus.getActiveMode());
+        assertTrue(events.stream().noneMatch(event -> !event.isFullResync() && event.affectsUser("bob")));
+    }
+
+    private void changeStream(Flux<ChangeStreamEvent<Reservation>> events) {
+        when(mongoTemplate.changeStream(eq(RESERVATIONS), any(ChangeStreamOptions.class), eq(Reservation.class)))
+                .thenAnswer(invocation -> {
+                    changeStreamOptions.add(invocation.getArgument(1));
+                    return events.concatWith(Flux.never());
+                });
+    }
+
+    private ChangeStreamEvent<Reservation> event(OperationType operationType, Reservation reservation) {
+        final Document fullDocument = operationType == OperationType.DELETE ? null : new Document("_id", new ObjectId(reservation.getId()))
+                .append("user", reservation.getUser())
+                .append("from", date(reservation.getFrom()))
+                .append("to", date(reservation.getTo()));
+        final ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(
+                operationType,
+                new BsonDocument("_data", new BsonString(new ObjectId().toHexString())),
+                new BsonDocument("db", new BsonString("test")).append("coll", new BsonString(RESERVATIONS)),
+                null,
+                fullDocument,
+                new BsonDocument("_id", new BsonObjectId(new ObjectId(reservation.getId()))),
+                new BsonTimestamp((int) Instant.now().getEpochSecond(), 1),
+                null,
+                null,
+                null);
+        return new ChangeStreamEvent<>(raw, Reservation.class, converter);
+    }
+
+    private static Document change(String user, String origin) {
+        return new Document("_id", new ObjectId())
+                .append("type", "CHANGE")
+                .append("origin", origin)
+                .append("publishedAt", new Date())
+                .append("from", DAY.toString())
+                .append("to", DAY.toString())
+                .append("users", List.of(user));
+    }
+
+    private static Reservation reservation(String user, LocalDate from) {
+        final Reservation reservation = new Reservation(user, from, from.plusDays(1));
+        reservation.setId(new ObjectId().toHexString());
+        return reservation;
+    }
+
+    private static Date date(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static MongoCommandException commandError(int code) {
+        return new MongoCommandException(new BsonDocument("ok", new BsonDouble(0))
+                .append("code", new BsonInt32(code))
+                .append("errmsg", new BsonString("error " + code)), new ServerAddress());
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met in time");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
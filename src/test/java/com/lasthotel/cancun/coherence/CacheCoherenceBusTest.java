@@ -0,0 +1,75 @@
+package com.lasthotel.cancun.coherence;
+
+import com.lasthotel.cancun.AppConfigTest;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.repositories.ReservationRepository;
+import com.lasthotel.cancun.services.ReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@ContextConfiguration(classes = AppConfigTest.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class CacheCoherenceBusTest {
+    @Autowired
+    private ReservationRepository repository;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @MockBean(name = "invalidationFeed")
+    private InvalidationListener listener;
+
+    @BeforeEach
+    public void setUpRepository() {
+        final Reservation reservation1 = new Reservation("test", LocalDate.of(2021, 7, 8), LocalDate.of(2021, 7, 10));
+        reservation1.setId("reservation1");
+
+        repository.save(reservation1).block();
+    }
+
+    @Test
+    public void when_makingReservation_then_invalidatesItsDatesAndUser() {
+        reservationService.makeReservation(new Reservation("test1", LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20))).block();
+
+        verify(listener, timeout(1000)).onInvalidation(argThat(event -> !event.isFullResync()
+                && event.affectsUser("test1")
+                && !event.affectsUser("test")
+                && event.affectsDates(LocalDate.of(2021, 7, 20), LocalDate.of(2021, 7, 22))
+                && !event.affectsDates(LocalDate.of(2021, 7, 8), LocalDate.of(2021, 7, 10))));
+    }
+
+    @Test
+    public void when_updatingReservation_then_invalidatesPreviousAndNewDates() {
+        final Reservation updated = new Reservation("test", LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20));
+        reservationService.updateReservation("reservation1", updated).block();
+
+        verify(listener, timeout(1000)).onInvalidation(argThat(event -> !event.isFullResync()
+                && event.affectsUser("test")
+                && event.affectsDates(LocalDate.of(2021, 7, 8), LocalDate.of(2021, 7, 8))
+                && event.affectsDates(LocalDate.of(2021, 7, 20), LocalDate.of(2021, 7, 20))));
+    }
+
+    @Test
+    public void when_deletingReservation_then_invalidatesItsDatesAndUser() {
+        reservationService.deleteReservation("reservation1").block();
+
+        verify(listener, timeout(1000)).onInvalidation(argThat(event -> !event.isFullResync()
+                && event.affectsUser("test")
+                && event.affectsDates(LocalDate.of(2021, 7, 9), LocalDate.of(2021, 7, 9))
+                && !event.affectsDates(LocalDate.of(2021, 7, 11), LocalDate.of(2021, 7, 12))));
+    }
+}
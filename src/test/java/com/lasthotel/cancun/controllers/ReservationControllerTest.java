@@ -129,6 +129,44 @@ public class ReservationControllerTest {
                 .expectStatus().is4xxClientError();
     }
 
+    @Test
+    public void when_checkingAvailabilityInBatch_then_returnsOccupancyAndPerRangeAvailability() {
+        final String request = "{\"ranges\":[" +
+                "{\"from\":\"2021-07-07\",\"to\":\"2021-07-09\"}," +
+                "{\"from\":\"2021-07-11\",\"to\":\"2021-07-11\"}," +
+                "{\"from\":\"2021-07-15\",\"to\":\"2021-07-17\"}," +
+                "{\"from\":\"2021-07-18\",\"to\":\"2021-07-20\"}]}";
+        final String json = "{\"from\":\"2021-07-07\"," +
+                "\"occupancy\":[0,1,1,1,0,1,1,1,0,1,1,0,0,0]," +
+                "\"available\":[false,true,false,true]}";
+
+        webClient.post().uri(uriBuilder -> uriBuilder.path("reservation/availability").build())
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().json(json);
+    }
+
+    @Test
+    public void when_checkingAvailabilityInBatchWithInvalidRange_then_badRequest() {
+        final var requests = List.of(
+                "{\"ranges\":[]}",
+                "{\"ranges\":[{\"from\":\"2021-07-18\",\"to\":\"2021-07-20\"},{\"from\":\"2021-07-19\",\"to\":\"2021-07-18\"}]}",
+                "{\"ranges\":[{\"from\":\"2021-07-06\",\"to\":\"2021-07-07\"}]}"
+        );
+
+        for (String request : requests) {
+            webClient.post().uri(uriBuilder -> uriBuilder.path("reservation/availability").build())
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(request)
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+    }
+
     @Test
     public void when_makingReservationWithAvailableDate_then_reservationMade() {
         final String json = "{\n" +
@@ -0,0 +1,137 @@
+package com.lasthotel.cancun.controllers;
+
+import com.lasthotel.cancun.AppConfigTest;
+import com.lasthotel.cancun.models.AvailabilityQuery;
+import com.lasthotel.cancun.models.AvailabilityUpdate;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.repositories.ReservationRepository;
+import com.lasthotel.cancun.rsocket.CompactPayloadFormat;
+import com.lasthotel.cancun.rsocket.RSocketTcpServer;
+import io.rsocket.exceptions.ApplicationErrorException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@ContextConfiguration(classes = AppConfigTest.class)
+public class ReservationRSocketControllerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Autowired
+    private ReservationRepository repository;
+
+    @Autowired
+    private RSocketTcpServer tcpServer;
+
+    @Autowired
+    private RSocketStrategies strategies;
+
+    private RSocketRequester requester;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll()
+                .thenMany(repository.save(new Reservation("test", LocalDate.of(2021, 7, 8), LocalDate.of(2021, 7, 10))))
+                .then()
+                .block();
+
+        requester = RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .dataMimeType(CompactPayloadFormat.MIME_TYPE)
+                .tcp("localhost", tcpServer.getPort());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        requester.rsocketClient().dispose();
+    }
+
+    @Test
+    public void when_checkingAvailability_then_answersForTheRange() {
+        StepVerifier.create(checkAvailability(LocalDate.of(2021, 7, 9), LocalDate.of(2021, 7, 11)))
+                .expectNext(new AvailabilityUpdate(LocalDate.of(2021, 7, 9), LocalDate.of(2021, 7, 11), false))
+                .expectComplete()
+                .verify(TIMEOUT);
+
+        StepVerifier.create(checkAvailability(LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20)))
+                .expectNext(new AvailabilityUpdate(LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20), true))
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    public void when_checkingAvailabilityOfInvalidRange_then_fails() {
+        StepVerifier.create(checkAvailability(LocalDate.of(2021, 7, 19), LocalDate.of(2021, 7, 18)))
+                .expectError(ApplicationErrorException.class)
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    public void when_holdIsPlaced_then_availabilityStreamEmitsTheChange() {
+        final LocalDate from = LocalDate.of(2021, 7, 18);
+        final LocalDate to = LocalDate.of(2021, 7, 20);
+
+        StepVerifier.create(requester.route("reservation.availability.stream")
+                        .data(new AvailabilityQuery(from, to))
+                        .retrieveFlux(AvailabilityUpdate.class))
+                .expectNext(new AvailabilityUpdate(from, to, true))
+                .then(() -> requester.route("reservation.hold")
+                        .data(new Reservation("partner", from, to))
+                        .send()
+                        .block(TIMEOUT))
+                .expectNext(new AvailabilityUpdate(from, to, false))
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        StepVerifier.create(repository.findAllByUser("partner").collectList())
+                .expectNextMatches(reservations -> reservations.size() == 1
+                        && reservations.get(0).getFrom().equals(from)
+                        && reservations.get(0).getTo().equals(to))
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    public void when_holdIsInvalid_then_nothingIsReserved() {
+        final List<Reservation> holds = List.of(
+                new Reservation("", LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20)),
+                new Reservation("partner", LocalDate.of(2021, 7, 19), LocalDate.of(2021, 7, 18)),
+                new Reservation("partner", LocalDate.of(2021, 7, 9), LocalDate.of(2021, 7, 11))
+        );
+
+        for (Reservation hold : holds) {
+            requester.route("reservation.hold").data(hold).send().block(TIMEOUT);
+        }
+        // Holds get no answer, so wait for a valid one sent afterwards to be stored
+        requester.route("reservation.hold")
+                .data(new Reservation("marker", LocalDate.of(2021, 7, 25), LocalDate.of(2021, 7, 26)))
+                .send()
+                .block(TIMEOUT);
+
+        StepVerifier.create(Mono.defer(() -> repository.findAllByUser("marker").next())
+                        .repeatWhenEmpty(repeats -> repeats.delayElements(Duration.ofMillis(20)))
+                        .then(repository.findAll().map(Reservation::getUser).collectList()))
+                .expectNextMatches(users -> users.size() == 2 && users.containsAll(List.of("test", "marker")))
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    private Mono<AvailabilityUpdate> checkAvailability(LocalDate from, LocalDate to) {
+        return requester.route("reservation.availability")
+                .data(new AvailabilityQuery(from, to))
+                .retrieveMono(AvailabilityUpdate.class);
+    }
+}
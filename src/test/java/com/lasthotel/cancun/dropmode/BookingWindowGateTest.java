@@ -0,0 +1,205 @@
+package com.lasthotel.cancun.dropmode;
+
+import com.lasthotel.cancun.MutableClock;
+import com.lasthotel.cancun.bulkhead.BulkheadProperties;
+import com.lasthotel.cancun.bulkhead.Bulkheads;
+import com.lasthotel.cancun.bulkhead.RequestClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookingWindowGateTest {
+    private static final LocalDate TODAY = LocalDate.of(2021, 7, 6);
+    private static final LocalDate OPENED = TODAY.plusDays(30);
+
+    private final MutableClock clock = new MutableClock(at(0, 0, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    private final DropModeProperties properties = new DropModeProperties();
+    private final List<Integer> order = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void when_outsideWindow_then_bookingRunsImmediately() {
+        clock.setInstant(at(10, 0, 0).toInstant(ZoneOffset.UTC));
+
+        StepVerifier.create(gate().submit(OPENED.minusDays(1), OPENED, () -> booking(1)))
+                .expectNext(1)
+                .verifyComplete();
+    }
+
+    @Test
+    public void when_insideWindow_then_otherDaysGoThrough() {
+        final BookingWindowGate gate = gate();
+
+        StepVerifier.create(gate.submit(TODAY.plusDays(5), TODAY.plusDays(6), () -> booking(1)))
+                .expectNext(1)
+                .verifyComplete();
+        assertEquals(0, gate.getQueued());
+    }
+
+    @Test
+    public void when_insideWindow_then_bookingsForNewDayAreHeldAndResolvedInArrivalOrder() {
+        properties.setWindow(Duration.ofMillis(300));
+        final BookingWindowGate gate = gate();
+
+        final Flux<Integer> results = Flux.merge(
+                gate.submit(OPENED, OPENED, () -> booking(1)),
+                gate.submit(OPENED.minusDays(2), OPENED, () -> booking(2)),
+                gate.submit(OPENED.minusDays(1), OPENED, () -> booking(3)));
+
+        StepVerifier.create(results)
+                .then(() -> {
+                    assertEquals(3, gate.getQueued());
+                    assertTrue(order.isEmpty());
+                })
+                .expectNext(1, 2, 3)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(List.of(1, 2, 3), order);
+    }
+
+    @Test
+    public void when_policyIsLottery_then_everyCallerGetsItsOwnResult() {
+        properties.setWindow(Duration.ofMillis(300));
+        properties.setPolicy(DropModeProperties.Policy.LOTTERY);
+        final BookingWindowGate gate = new BookingWindowGate(properties, clock, new SimpleMeterRegistry(), new Random(42));
+
+        final List<Mono<Integer>> callers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int id = i;
+            callers.add(gate.submit(OPENED, OPENED, () -> booking(id)).map(result -> result * 100 + id));
+        }
+
+        StepVerifier.create(Flux.merge(callers).collectList())
+                .assertNext(results -> results.forEach(result -> assertEquals(result / 100, result % 100)))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(IntStream.range(0, 20).boxed().collect(Collectors.toSet()), Set.copyOf(order));
+        assertNotEquals(IntStream.range(0, 20).boxed().collect(Collectors.toList()), order);
+    }
+
+    @Test
+    public void when_windowHasPassed_then_lateBookingWaitsForHeldOnes() {
+        properties.setWindow(Duration.ofSeconds(30));
+        final BookingWindowGate gate = gate();
+
+        final Mono<Integer> held = gate.submit(OPENED, OPENED, () -> booking(1));
+        StepVerifier.create(held.mergeWith(Mono.defer(() -> {
+                    clock.advance(Duration.ofMinutes(1));
+                    return gate.submit(OPENED, OPENED, () -> booking(2));
+                })))
+                .expectNext(1, 2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(List.of(1, 2), order);
+    }
+
+    @Test
+    public void when_tooManyBookingsAreHeld_then_bookingIsRejected() {
+        properties.setMaxQueued(1);
+        final BookingWindowGate gate = gate();
+
+        gate.submit(OPENED, OPENED, () -> booking(1)).subscribe();
+
+        StepVerifier.create(gate.submit(OPENED, OPENED, () -> booking(2)))
+                .expectError(BookingWindowFullException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void when_heldInWriteBulkhead_then_bookingsKeepNoSlotsAndAllResolve() {
+        final Bulkheads bulkheads = new Bulkheads(new BulkheadProperties(), new SimpleMeterRegistry());
+        final BookingWindowGate gate = gate();
+        final int held = 1000;
+
+        final Mono<Long> resolved = Flux.range(0, held)
+                .flatMap(i -> bulkheads.execute(RequestClass.WRITE, () -> gate.submit(OPENED, OPENED, () -> booking(i))), held)
+                .count();
+
+        StepVerifier.create(resolved)
+                .then(() -> {
+                    assertEquals(held, gate.getQueued());
+                    assertEquals(0, bulkheads.getInFlight(RequestClass.WRITE));
+                    StepVerifier.create(bulkheads.execute(RequestClass.WRITE,
+                                    () -> gate.submit(TODAY.plusDays(5), TODAY.plusDays(6), () -> booking(-1))))
+                            .expectNext(-1)
+                            .expectComplete()
+                            .verify(Duration.ofSeconds(1));
+                })
+                .expectNext((long) held)
+                .expectComplete()
+                .verify(Duration.ofSeconds(10));
+        assertEquals(0, bulkheads.getInFlight(RequestClass.WRITE));
+        assertEquals(0, bulkheads.getQueued(RequestClass.WRITE));
+    }
+
+    @Test
+    public void when_nothingIsHeldAfterWindow_then_bookingKeepsItsSlot() {
+        properties.setWindow(Duration.ofSeconds(30));
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final Bulkheads bulkheads = new Bulkheads(new BulkheadProperties(), meterRegistry);
+        final BookingWindowGate gate = gate();
+        clock.advance(Duration.ofHours(12));
+
+        StepVerifier.create(bulkheads.execute(RequestClass.WRITE, () -> gate.submit(OPENED, OPENED, () -> booking(1))))
+                .expectNext(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, acquisitions(meterRegistry));
+
+        // Once a batch has been resolved there is nothing to queue behind either
+        clock.setInstant(at(0, 0, 0).toInstant(ZoneOffset.UTC));
+        final Mono<Integer> held = bulkheads.execute(RequestClass.WRITE, () -> gate.submit(OPENED, OPENED, () -> booking(2)));
+        StepVerifier.create(held.mergeWith(Mono.defer(() -> {
+                    assertEquals(1, gate.getQueued());
+                    clock.advance(Duration.ofMinutes(1));
+                    return bulkheads.execute(RequestClass.WRITE, () -> gate.submit(OPENED, OPENED, () -> booking(3)));
+                })))
+                .expectNext(2, 3)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        final long beforeLast = acquisitions(meterRegistry);
+
+        StepVerifier.create(bulkheads.execute(RequestClass.WRITE, () -> gate.submit(OPENED, OPENED, () -> booking(4))))
+                .expectNext(4)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(beforeLast + 1, acquisitions(meterRegistry));
+        assertEquals(0, bulkheads.getInFlight(RequestClass.WRITE));
+    }
+
+    private static long acquisitions(SimpleMeterRegistry meterRegistry) {
+        return meterRegistry.get("cancun.bulkhead.wait").tag("bulkhead", "write").timer().count();
+    }
+
+    private BookingWindowGate gate() {
+        return new BookingWindowGate(properties, clock, new SimpleMeterRegistry());
+    }
+
+    private Mono<Integer> booking(int id) {
+        return Mono.fromCallable(() -> {
+            order.add(id);
+            return id;
+        });
+    }
+
+    private static LocalDateTime at(int hour, int minute, int second) {
+        return TODAY.atTime(hour, minute, second);
+    }
+}
@@ -0,0 +1,273 @@
+package com.lasthotel.cancun.eventlog;
+
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.services.ReservationChangedEvent;
+import org.junit.jupiter.api.Test;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReservationEventLogTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2021-07-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void when_logIsReopened_then_stateIsRebuilt() throws IOException {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        eventLog.onReservationChanged(new ReservationChangedEvent(null, reservation("1", "alice", 5)));
+        eventLog.onReservationChanged(new ReservationChangedEvent(null, reservation("2", "bob", 10)));
+        eventLog.onReservationChanged(new ReservationChangedEvent(reservation("1", "alice", 5), reservation("1", "alice", 6)));
+        eventLog.onReservationChanged(new ReservationChangedEvent(reservation("2", "bob", 10), null));
+        eventLog.close();
+
+        final ReservationEventLog reopened = open(4096, 1000);
+
+        assertEquals(4, reopened.getSequence());
+        assertEquals(Map.of("1", reservation("1", "alice", 6)), reopened.getState());
+        assertEquals(List.of(ReservationEvent.Type.CREATED, ReservationEvent.Type.CREATED, ReservationEvent.Type.UPDATED, ReservationEvent.Type.DELETED),
+                reopened.readEvents().stream().map(ReservationEvent::getType).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void when_segmentIsFull_then_nextSegmentIsUsed() throws IOException {
+        final ReservationEventLog eventLog = open(128, 1000);
+        for (int i = 0; i < 10; i++) {
+            eventLog.append(ReservationEvent.Type.CREATED, reservation(String.valueOf(i), "user" + i, i));
+        }
+        eventLog.close();
+
+        assertTrue(files("segment-").size() > 1);
+        assertEquals(10, open(128, 1000).getState().size());
+    }
+
+    @Test
+    public void when_snapshotIsTaken_then_coveredSegmentsAreDeleted() throws IOException {
+        final ReservationEventLog eventLog = open(128, 5);
+        for (int i = 0; i < 12; i++) {
+            eventLog.append(ReservationEvent.Type.CREATED, reservation(String.valueOf(i), "user" + i, i));
+        }
+        eventLog.close();
+
+        assertEquals(List.of("snapshot-00000000000000000010.snap"), files("snapshot-"));
+        assertEquals(List.of("segment-00000000000000000011.log"), files("segment-"));
+
+        final ReservationEventLog reopened = open(128, 5);
+        assertEquals(12, reopened.getSequence());
+        assertEquals(10, reopened.getSnapshotSequence());
+        assertEquals(12, reopened.getState().size());
+        assertEquals(2, reopened.readEvents().size());
+    }
+
+    @Test
+    public void when_lastRecordIsTorn_then_itIsDiscarded() throws IOException {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        eventLog.append(ReservationEvent.Type.CREATED, reservation("1", "alice", 5));
+        final ReservationEvent second = eventLog.append(ReservationEvent.Type.CREATED, reservation("2", "bob", 10));
+        eventLog.close();
+
+        // Flip a payload byte of the second record so its checksum no longer matches
+        final Path segment = directory.resolve(files("segment-").get(0));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.read(buffer, 0);
+            final int secondRecordPayload = 8 + buffer.flip().getInt() + 8;
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xff}), secondRecordPayload + 20);
+        }
+
+        final ReservationEventLog reopened = open(4096, 1000);
+        assertEquals(1, reopened.getSequence());
+        assertFalse(reopened.getState().containsKey(second.getReservation().getId()));
+
+        reopened.append(ReservationEvent.Type.CREATED, reservation("3", "carol", 20));
+        reopened.close();
+        assertEquals(List.of("1", "3"), open(4096, 1000).readEvents().stream()
+                .map(event -> event.getReservation().getId())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void when_seeded_then_stateStartsFromSnapshot() throws IOException {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        assertTrue(eventLog.isEmpty());
+
+        eventLog.seed(List.of(reservation("1", "alice", 5), reservation("2", "bob", 10)));
+        eventLog.append(ReservationEvent.Type.DELETED, reservation("1", "alice", 5));
+        eventLog.close();
+
+        assertEquals(Map.of("2", reservation("2", "bob", 10)), open(4096, 1000).getState());
+    }
+
+    @Test
+    public void when_appendFails_then_changeIsLostWithoutFailingTheCaller() throws IOException {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        eventLog.onReservationChanged(new ReservationChangedEvent(null, new Reservation("alice", null, null)));
+        eventLog.onReservationChanged(new ReservationChangedEvent(null, reservation("1", "alice", 5)));
+        eventLog.close();
+
+        assertEquals(1, eventLog.getLostEvents());
+        assertEquals(Map.of("1", reservation("1", "alice", 5)), open(4096, 1000).getState());
+    }
+
+    @Test
+    public void when_restoring_then_sideCollectionReplacesTheLiveOne() {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        eventLog.append(ReservationEvent.Type.CREATED, reservation("1", "alice", 5));
+        eventLog.append(ReservationEvent.Type.CREATED, reservation("2", "bob", 10));
+        final RestoreMocks mocks = new RestoreMocks(() -> {
+        });
+
+        StepVerifier.create(eventLog.restore(mocks.mongoTemplate))
+                .expectNext(2L)
+                .verifyComplete();
+
+        assertEquals(Set.of(reservation("1", "alice", 5), reservation("2", "bob", 10)), Set.copyOf(mocks.inserted));
+        verify(mocks.sideCollection).renameCollection(eq(new MongoNamespace("test", "reservations")), any(RenameCollectionOptions.class));
+    }
+
+    @Test
+    public void when_logChangesDuringRestore_then_liveCollectionIsKept() {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        eventLog.append(ReservationEvent.Type.CREATED, reservation("1", "alice", 5));
+        final RestoreMocks mocks = new RestoreMocks(
+                () -> eventLog.append(ReservationEvent.Type.CREATED, reservation("2", "bob", 10)));
+
+        StepVerifier.create(eventLog.restore(mocks.mongoTemplate))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(mocks.sideCollection, never()).renameCollection(any(MongoNamespace.class), any(RenameCollectionOptions.class));
+        verify(mocks.mongoTemplate, times(2)).dropCollection("reservations.restore");
+    }
+
+    @Test
+    public void when_seedFailed_then_restoreLeavesLiveCollectionAlone() throws IOException {
+        final ReservationEventLog failed = open(4096, 1000);
+        failed.markSeedFailed();
+        failed.append(ReservationEvent.Type.CREATED, reservation("1", "alice", 5));
+        failed.close();
+
+        // The mark outlives a restart, when the log is no longer empty and is not seeded again
+        final ReservationEventLog eventLog = open(4096, 1000);
+        assertTrue(eventLog.getIncompleteReason().isPresent());
+        assertRestoreIsRefused(eventLog);
+    }
+
+    @Test
+    public void when_changesWereLost_then_restoreLeavesLiveCollectionAlone() throws IOException {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        eventLog.onReservationChanged(new ReservationChangedEvent(null, reservation("1", "alice", 5)));
+        eventLog.onReservationChanged(new ReservationChangedEvent(null, new Reservation("bob", null, null)));
+        eventLog.close();
+
+        assertEquals(1, eventLog.getLostEvents());
+        assertRestoreIsRefused(eventLog);
+    }
+
+    @Test
+    public void when_seededAfterAFailure_then_restoreIsAllowedAgain() throws IOException {
+        final ReservationEventLog eventLog = open(4096, 1000);
+        eventLog.markSeedFailed();
+        eventLog.seed(List.of(reservation("1", "alice", 5)));
+        eventLog.close();
+
+        assertFalse(open(4096, 1000).getIncompleteReason().isPresent());
+    }
+
+    private static void assertRestoreIsRefused(ReservationEventLog eventLog) {
+        final RestoreMocks mocks = new RestoreMocks(() -> {
+        });
+
+        StepVerifier.create(eventLog.restore(mocks.mongoTemplate))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(mocks.mongoTemplate, never()).dropCollection(any(String.class));
+        verify(mocks.mongoTemplate, never()).createCollection(any(String.class));
+        verify(mocks.mongoTemplate, never()).insert(anyCollection(), any(String.class));
+        verify(mocks.sideCollection, never()).renameCollection(any(MongoNamespace.class), any(RenameCollectionOptions.class));
+    }
+
+    private ReservationEventLog open(int segmentSize, int snapshotEvery) {
+        final ReservationEventLog eventLog = new ReservationEventLog(directory, segmentSize, snapshotEvery, 100, CLOCK);
+        eventLog.recover();
+        return eventLog;
+    }
+
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Template whose side collection records the inserted reservations, running {@code duringInsert} meanwhile.
+     */
+    private static class RestoreMocks {
+        private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        @SuppressWarnings("unchecked")
+        private final MongoCollection<Document> sideCollection = mock(MongoCollection.class);
+        private final List<Reservation> inserted = new ArrayList<>();
+
+        private RestoreMocks(Runnable duringInsert) {
+            when(mongoTemplate.getCollectionName(Reservation.class)).thenReturn("reservations");
+            when(mongoTemplate.dropCollection("reservations.restore")).thenReturn(Mono.empty());
+            when(mongoTemplate.createCollection("reservations.restore")).thenReturn(Mono.just(sideCollection));
+            when(mongoTemplate.getCollection("reservations.restore")).thenReturn(Mono.just(sideCollection));
+            when(mongoTemplate.insert(anyCollection(), eq("reservations.restore"))).thenAnswer(invocation -> {
+                final Collection<Reservation> reservations = invocation.getArgument(0);
+                inserted.addAll(reservations);
+                duringInsert.run();
+                return Flux.fromIterable(reservations);
+            });
+            when(sideCollection.getNamespace()).thenReturn(new MongoNamespace("test", "reservations.restore"));
+            when(sideCollection.renameCollection(any(MongoNamespace.class), any(RenameCollectionOptions.class))).thenReturn(Mono.empty());
+        }
+    }
+
+    private static Reservation reservation(String id, String user, int day) {
+        final Reservation reservation = new Reservation(user, LocalDate.of(2021, 7, day + 1), LocalDate.of(2021, 7, day + 3));
+        reservation.setId(id);
+        return reservation;
+    }
+}
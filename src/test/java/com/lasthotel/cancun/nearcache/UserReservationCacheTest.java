@@ -0,0 +1,108 @@
+package com.lasthotel.cancun.nearcache;
+
+import com.lasthotel.cancun.coherence.InvalidationEvent;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.services.ReservationChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UserReservationCacheTest {
+    private static final LocalDate DAY = LocalDate.of(2021, 7, 10);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserReservationCache cache = new UserReservationCache(new NearCacheProperties(), meterRegistry);
+    private final Map<String, List<Reservation>> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, Flux<Reservation>> loader = user -> Flux.defer(() -> {
+        loads.incrementAndGet();
+        return Flux.fromIterable(stored.getOrDefault(user, List.of()));
+    });
+
+    @Test
+    public void when_userIsReadTwice_then_reservationsAreLoadedOnce() {
+        stored.put("alice", List.of(reservation("1", "alice", DAY)));
+
+        StepVerifier.create(Flux.concat(cache.get("alice", loader), cache.get("alice", loader)).map(Reservation::getId))
+                .expectNext("1", "1")
+                .verifyComplete();
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "userReservations").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    public void when_userHasNoReservations_then_emptyResultIsCached() {
+        StepVerifier.create(cache.get("bob", loader).concatWith(cache.get("bob", loader)))
+                .verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void when_reservationChangesLocally_then_cachedListIsUpdatedInPlace() {
+        final Reservation first = reservation("1", "alice", DAY);
+        stored.put("alice", List.of(first));
+        cache.get("alice", loader).blockLast();
+
+        final Reservation second = reservation("2", "alice", DAY.plusDays(3));
+        cache.onReservationChanged(new ReservationChangedEvent(null, second));
+        final Reservation moved = reservation("1", "alice", DAY.plusDays(6));
+        cache.onReservationChanged(new ReservationChangedEvent(first, moved));
+        cache.onReservationChanged(new ReservationChangedEvent(second, null));
+        cache.onInvalidation(InvalidationEvent.forLocalChange(second, null, Instant.now()));
+
+        StepVerifier.create(cache.get("alice", loader))
+                .expectNext(moved)
+                .verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void when_reservationMovesToAnotherUser_then_bothListsAreUpdated() {
+        final Reservation reservation = reservation("1", "alice", DAY);
+        stored.put("alice", List.of(reservation));
+        cache.get("alice", loader).blockLast();
+        cache.get("bob", loader).blockLast();
+
+        final Reservation moved = reservation("1", "bob", DAY);
+        cache.onReservationChanged(new ReservationChangedEvent(reservation, moved));
+
+        StepVerifier.create(cache.get("alice", loader)).verifyComplete();
+        StepVerifier.create(cache.get("bob", loader)).expectNext(moved).verifyComplete();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void when_otherNodeChangesUser_then_userIsReloaded() {
+        final Reservation reservation = reservation("1", "alice", DAY);
+        cache.get("alice", loader).blockLast();
+        cache.get("bob", loader).blockLast();
+
+        stored.put("alice", List.of(reservation));
+        cache.onInvalidation(InvalidationEvent.forChange(null, reservation, Instant.now()));
+
+        StepVerifier.create(cache.get("alice", loader)).expectNext(reservation).verifyComplete();
+        StepVerifier.create(cache.get("bob", loader)).verifyComplete();
+        assertEquals(3, loads.get());
+
+        cache.onInvalidation(InvalidationEvent.fullResync(Instant.now()));
+        cache.get("bob", loader).blockLast();
+        assertEquals(4, loads.get());
+    }
+
+    private static Reservation reservation(String id, String user, LocalDate from) {
+        final Reservation reservation = new Reservation(user, from, from.plusDays(1));
+        reservation.setId(id);
+        return reservation;
+    }
+}
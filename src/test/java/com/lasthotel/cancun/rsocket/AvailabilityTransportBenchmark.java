@@ -0,0 +1,142 @@
+package com.lasthotel.cancun.rsocket;
+
+import com.lasthotel.cancun.AppConfigTest;
+import com.lasthotel.cancun.models.AvailabilityQuery;
+import com.lasthotel.cancun.models.AvailabilityUpdate;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.repositories.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the REST availability check with the RSocket one over TCP and WebSocket, in the same JVM against the
+ * same embedded Mongo. Run with {@code gradlew benchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@ContextConfiguration(classes = AppConfigTest.class)
+public class AvailabilityTransportBenchmark {
+    private static final int REQUESTS = 20_000;
+    private static final int WARMUP_REQUESTS = 2_000;
+    private static final int CONCURRENCY = 64;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2021, 7, 7);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RSocketTcpServer tcpServer;
+
+    @Autowired
+    private RSocketStrategies strategies;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Autowired
+    private ReservationRepository repository;
+
+    @BeforeEach
+    public void setUpRepository() {
+        repository.deleteAll()
+                .thenMany(repository.saveAll(List.of(
+                        new Reservation("test", LocalDate.of(2021, 7, 8), LocalDate.of(2021, 7, 10)),
+                        new Reservation("test", LocalDate.of(2021, 7, 12), LocalDate.of(2021, 7, 14)),
+                        new Reservation("test", LocalDate.of(2021, 7, 20), LocalDate.of(2021, 7, 22))
+                )))
+                .then()
+                .block();
+    }
+
+    @Test
+    public void compareRestAndRSocketAvailabilityChecks() {
+        final WebClient webClient = webClientBuilder.clone().baseUrl("http://localhost:" + port).build();
+        final RSocketRequester tcp = requester().tcp("localhost", tcpServer.getPort());
+        final RSocketRequester webSocket = requester().websocket(URI.create("ws://localhost:" + port + "/rsocket"));
+
+        final List<String> results = List.of(
+                run("REST, HTTP/1.1 + text", i -> webClient.get()
+                        .uri(uriBuilder -> uriBuilder.path("/reservation")
+                                .queryParam("from", from(i))
+                                .queryParam("to", from(i).plusDays(2))
+                                .build())
+                        .accept(MediaType.TEXT_PLAIN)
+                        .retrieve()
+                        .bodyToMono(String.class)),
+                run("RSocket, TCP + compact", i -> tcp.route("reservation.availability")
+                        .data(new AvailabilityQuery(from(i), from(i).plusDays(2)))
+                        .retrieveMono(AvailabilityUpdate.class)),
+                run("RSocket, WebSocket + compact", i -> webSocket.route("reservation.availability")
+                        .data(new AvailabilityQuery(from(i), from(i).plusDays(2)))
+                        .retrieveMono(AvailabilityUpdate.class))
+        );
+
+        tcp.rsocketClient().dispose();
+        webSocket.rsocketClient().dispose();
+
+        System.out.printf("%-30s %12s %10s %10s %10s%n", "transport", "requests/s", "p50 us", "p99 us", "max us");
+        results.forEach(System.out::println);
+    }
+
+    private RSocketRequester.Builder requester() {
+        return RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .dataMimeType(CompactPayloadFormat.MIME_TYPE);
+    }
+
+    private String run(String name, IntFunction<Mono<?>> call) {
+        measure(call, WARMUP_REQUESTS);
+
+        final long start = System.nanoTime();
+        final List<Long> latencies = measure(call, REQUESTS);
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(REQUESTS, latencies.size());
+        return String.format("%-30s %12.0f %10d %10d %10d",
+                name,
+                REQUESTS / elapsedSeconds,
+                percentile(latencies, 0.50),
+                percentile(latencies, 0.99),
+                latencies.get(latencies.size() - 1));
+    }
+
+    private List<Long> measure(IntFunction<Mono<?>> call, int requests) {
+        return Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    final long start = System.nanoTime();
+                    return call.apply(i).map(result -> TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }), CONCURRENCY)
+                .sort()
+                .collectList()
+                .block();
+    }
+
+    private static long percentile(List<Long> sortedLatencies, double percentile) {
+        return sortedLatencies.get((int) Math.ceil(percentile * sortedLatencies.size()) - 1);
+    }
+
+    private static LocalDate from(int i) {
+        return FIRST_DAY.plusDays(i % 28);
+    }
+}
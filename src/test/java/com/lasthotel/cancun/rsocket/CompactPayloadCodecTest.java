@@ -0,0 +1,96 @@
+package com.lasthotel.cancun.rsocket;
+
+import com.lasthotel.cancun.models.AvailabilityQuery;
+import com.lasthotel.cancun.models.AvailabilityUpdate;
+import com.lasthotel.cancun.models.Reservation;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactPayloadCodecTest {
+    private final CompactPayloadEncoder encoder = new CompactPayloadEncoder();
+    private final CompactPayloadDecoder decoder = new CompactPayloadDecoder();
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    @Test
+    public void when_encodingAvailabilityQuery_then_usesEightBytesAndRoundTrips() {
+        final AvailabilityQuery query = new AvailabilityQuery(LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20));
+
+        final DataBuffer buffer = encode(query);
+        assertEquals(8, buffer.readableByteCount());
+        assertEquals(query, decode(buffer, AvailabilityQuery.class));
+    }
+
+    @Test
+    public void when_encodingAvailabilityUpdate_then_usesNineBytesAndRoundTrips() {
+        final AvailabilityUpdate update = new AvailabilityUpdate(LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20), true);
+
+        final DataBuffer buffer = encode(update);
+        assertEquals(9, buffer.readableByteCount());
+        assertEquals(update, decode(buffer, AvailabilityUpdate.class));
+    }
+
+    @Test
+    public void when_encodingReservation_then_roundTrips() {
+        final Reservation reservation = new Reservation("partnér", LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20));
+        reservation.setId("reservation1");
+
+        assertEquals(reservation, decode(encode(reservation), Reservation.class));
+    }
+
+    @Test
+    public void when_encodingMissingFields_then_roundTripsAsNull() {
+        final Reservation reservation = new Reservation();
+
+        assertEquals(reservation, decode(encode(reservation), Reservation.class));
+    }
+
+    @Test
+    public void when_mimeTypeOrTypeUnsupported_then_codecDoesNotApply() {
+        assertTrue(encoder.canEncode(ResolvableType.forClass(Reservation.class), CompactPayloadFormat.MIME_TYPE));
+        assertFalse(encoder.canEncode(ResolvableType.forClass(Reservation.class), MimeTypeUtils.APPLICATION_JSON));
+        assertFalse(encoder.canEncode(ResolvableType.forClass(String.class), CompactPayloadFormat.MIME_TYPE));
+        assertFalse(decoder.canDecode(ResolvableType.forClass(String.class), CompactPayloadFormat.MIME_TYPE));
+    }
+
+    @Test
+    public void when_stringLengthIsNegative_then_decodingFails() {
+        final DataBuffer buffer = bufferFactory.wrap(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFE, 0, 0});
+
+        assertThrows(DecodingException.class, () -> decode(buffer, Reservation.class));
+    }
+
+    @Test
+    public void when_stringLengthExceedsPayload_then_decodingFails() {
+        final DataBuffer buffer = bufferFactory.wrap(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 100, 'i', 'd'});
+
+        assertThrows(DecodingException.class, () -> decode(buffer, Reservation.class));
+    }
+
+    @Test
+    public void when_stringIsTooLong_then_encodingFails() {
+        final Reservation reservation = new Reservation("u".repeat(Short.MAX_VALUE + 1), LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 20));
+
+        assertThrows(EncodingException.class, () -> encode(reservation));
+    }
+
+    private DataBuffer encode(Object value) {
+        return encoder.encodeValue(value, bufferFactory, ResolvableType.forInstance(value), CompactPayloadFormat.MIME_TYPE, Map.of());
+    }
+
+    private Object decode(DataBuffer buffer, Class<?> type) {
+        return decoder.decode(buffer, ResolvableType.forClass(type), CompactPayloadFormat.MIME_TYPE, Map.of());
+    }
+}
@@ -0,0 +1,212 @@
+package com.lasthotel.cancun.services;
+
+import com.lasthotel.cancun.AppConfigTest;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.repositories.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fires randomized, interleaved creates, updates and deletes at the service in parallel, then checks the
+ * collection for double bookings and for reservations lost by an update. Run with {@code gradlew stressTest}, and
+ * tune it with the {@code stress.operations}, {@code stress.concurrency} and {@code stress.seed} system properties.
+ * <p>
+ * The operations are planned up front from the seed. Updates and deletes name their target by the planned create
+ * that made it, and wait for that create, so a failing run's seed replays the same operations on the same targets.
+ * Only their interleaving, which is what the run is testing, differs.
+ */
+@Tag("stress")
+@SpringBootTest
+@ActiveProfiles("test")
+@ContextConfiguration(classes = AppConfigTest.class)
+public class ReservationServiceStressTest {
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 5_000);
+    private static final int CONCURRENCY = Integer.getInteger("stress.concurrency", 64);
+    private static final long SEED = Long.getLong("stress.seed", System.nanoTime());
+    private static final int USERS = 50;
+    private static final LocalDate FIRST_DAY = AppConfigTest.LOCAL_DATE.plusDays(1);
+    private static final int BOOKABLE_DAYS = 30;
+
+    @Autowired
+    private ReservationRepository repository;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    private final Map<Integer, Mono<Reservation>> created = new ConcurrentHashMap<>();
+    private final Set<String> liveIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUpRepository() {
+        repository.deleteAll().block();
+    }
+
+    @Test
+    public void when_writesRaceEachOther_then_invariantsHold() {
+        final List<Operation> plan = plan(new SplittableRandom(SEED));
+        final long start = System.nanoTime();
+        Flux.fromIterable(plan)
+                .flatMap(this::run, CONCURRENCY)
+                .blockLast(Duration.ofMinutes(10));
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        final List<Reservation> reservations = repository.findAll()
+                .collectSortedList(Comparator.comparing(Reservation::getFrom))
+                .block();
+        final Set<String> storedIds = reservations.stream().map(Reservation::getId).collect(Collectors.toSet());
+
+        final List<String> overlaps = new ArrayList<>();
+        for (int i = 1; i < reservations.size(); i++) {
+            final Reservation previous = reservations.get(i - 1);
+            final Reservation current = reservations.get(i);
+            if (!current.getFrom().isAfter(previous.getTo())) {
+                overlaps.add(previous + " / " + current);
+            }
+        }
+        final Set<String> vanished = liveIds.stream().filter(id -> !storedIds.contains(id)).collect(Collectors.toSet());
+        final Set<String> resurrected = storedIds.stream().filter(id -> !liveIds.contains(id)).collect(Collectors.toSet());
+
+        final long commits = count("create.ok") + count("update.ok") + count("delete.ok");
+        final long violations = overlaps.size() + vanished.size() + resurrected.size();
+        System.out.printf("%nStress run: seed=%d operations=%d concurrency=%d in %.2f s%n", SEED, OPERATIONS, CONCURRENCY, seconds);
+        System.out.printf("  outcomes             %s%n", new TreeMap<>(outcomes));
+        System.out.printf("  double bookings      %d%n", overlaps.size());
+        System.out.printf("  vanished on update   %d%n", vanished.size());
+        System.out.printf("  deleted but present  %d%n", resurrected.size());
+        System.out.printf("  commits/s            %.1f%n", commits / seconds);
+        System.out.printf("  correct commits/s    %.1f%n", Math.max(0, commits - violations) / seconds);
+        overlaps.stream().limit(10).forEach(overlap -> System.out.println("  overlap: " + overlap));
+
+        assertEquals(List.of(), overlaps, "Double bookings, seed " + SEED);
+        assertEquals(Set.of(), vanished, "Reservations lost by an update, seed " + SEED);
+    }
+
+    private static List<Operation> plan(SplittableRandom random) {
+        final List<Operation> plan = new ArrayList<>(OPERATIONS);
+        final List<Integer> creates = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            final int roll = random.nextInt(100);
+            final LocalDate from = FIRST_DAY.plusDays(random.nextInt(BOOKABLE_DAYS - 2));
+            final LocalDate to = from.plusDays(random.nextInt(3));
+            if (roll < 50 || creates.isEmpty()) {
+                creates.add(i);
+                plan.add(new Operation(Operation.Type.CREATE, i, "user" + random.nextInt(USERS), from, to));
+            } else {
+                final int target = creates.get(random.nextInt(creates.size()));
+                plan.add(new Operation(roll < 80 ? Operation.Type.UPDATE : Operation.Type.DELETE, target, null, from, to));
+            }
+        }
+        return plan;
+    }
+
+    private Mono<Void> run(Operation operation) {
+        switch (operation.type) {
+            case CREATE:
+                return create(operation);
+            case UPDATE:
+                return update(operation);
+            default:
+                return delete(operation);
+        }
+    }
+
+    private Mono<Void> create(Operation operation) {
+        final Mono<Reservation> saved = reservationService.makeReservation(operation.reservation())
+                .doOnNext(reservation -> liveIds.add(reservation.getId()))
+                .doOnSuccess(reservation -> record(reservation == null ? "create.rejected" : "create.ok"))
+                .onErrorResume(e -> {
+                    record("create.error");
+                    return Mono.empty();
+                })
+                .cache();
+        // Registered in plan order, before any operation on it is started
+        created.put(operation.ref, saved);
+        return saved.then();
+    }
+
+    private Mono<Void> update(Operation operation) {
+        final Reservation reservation = operation.reservation();
+        return created.get(operation.ref)
+                .flatMap(target -> reservationService.updateReservation(target.getId(), reservation)
+                        .map(updated -> updated.getFrom().equals(reservation.getFrom()) && updated.getTo().equals(reservation.getTo())
+                                ? "update.ok" : "update.rejected")
+                        .defaultIfEmpty("update.notfound")
+                        .onErrorReturn("update.error"))
+                .defaultIfEmpty("update.unresolved")
+                .doOnNext(this::record)
+                .then();
+    }
+
+    private Mono<Void> delete(Operation operation) {
+        return created.get(operation.ref)
+                .flatMap(target -> reservationService.deleteReservation(target.getId())
+                        .doOnNext(deleted -> liveIds.remove(deleted.getId()))
+                        .map(deleted -> "delete.ok")
+                        .defaultIfEmpty("delete.notfound")
+                        .onErrorReturn("delete.error"))
+                .defaultIfEmpty("delete.unresolved")
+                .doOnNext(this::record)
+                .then();
+    }
+
+    private void record(String outcome) {
+        outcomes.computeIfAbsent(outcome, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private long count(String outcome) {
+        final AtomicLong count = outcomes.get(outcome);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * A planned operation. {@code ref} is the plan index of the create that made, or makes, the reservation.
+     */
+    private static final class Operation {
+        private enum Type {
+            CREATE,
+            UPDATE,
+            DELETE
+        }
+
+        private final Type type;
+        private final int ref;
+        private final String user;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private Operation(Type type, int ref, String user, LocalDate from, LocalDate to) {
+            this.type = type;
+            this.ref = ref;
+            this.user = user;
+            this.from = from;
+            this.to = to;
+        }
+
+        private Reservation reservation() {
+            return new Reservation(user, from, to);
+        }
+    }
+}
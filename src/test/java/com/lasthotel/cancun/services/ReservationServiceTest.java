@@ -1,6 +1,8 @@
 package com.lasthotel.cancun.services;
 
 import com.lasthotel.cancun.AppConfigTest;
+import com.lasthotel.cancun.models.AvailabilityBatchResponse;
+import com.lasthotel.cancun.models.AvailabilityQuery;
 import com.lasthotel.cancun.models.Reservation;
 import com.lasthotel.cancun.repositories.ReservationRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -165,6 +167,25 @@ public class ReservationServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void when_gettingAvailabilityInBatch_then_answersEveryRangeFromOccupancy() {
+        final var ranges = List.of(
+                new AvailabilityQuery(LocalDate.of(2021, 7, 15), LocalDate.of(2021, 7, 15)),
+                new AvailabilityQuery(LocalDate.of(2021, 7, 9), LocalDate.of(2021, 7, 11)),
+                new AvailabilityQuery(LocalDate.of(2021, 7, 18), LocalDate.of(2021, 7, 19))
+        );
+
+        final Mono<AvailabilityBatchResponse> availability = reservationService.getAvailability(ranges);
+
+        StepVerifier.create(availability)
+                .expectNext(new AvailabilityBatchResponse(
+                        LocalDate.of(2021, 7, 9),
+                        new int[]{1, 1, 0, 1, 1, 1, 0, 1, 1, 0, 0},
+                        new boolean[]{true, false, true}
+                ))
+                .verifyComplete();
+    }
+
     @Test
     public void when_gettingReservationsByUser_then_returnsOnlyUsersReservations() {
         final Flux<Reservation> trial1 = reservationService.getReservationsForUser("test");
@@ -0,0 +1,91 @@
+package com.lasthotel.cancun.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SingleFlightTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test", 4, meterRegistry);
+
+    @Test
+    public void when_callsAreConcurrent_then_shareOneUpstreamCall() {
+        final AtomicInteger upstreamCalls = new AtomicInteger();
+        final Sinks.One<Integer> result = Sinks.one();
+
+        final Flux<Integer> callers = Flux.merge(
+                singleFlight.execute("key", () -> Mono.defer(() -> {
+                    upstreamCalls.incrementAndGet();
+                    return result.asMono();
+                })),
+                singleFlight.execute("key", () -> Mono.fromCallable(upstreamCalls::incrementAndGet)),
+                singleFlight.execute("key", () -> Mono.fromCallable(upstreamCalls::incrementAndGet))
+        );
+
+        StepVerifier.create(callers)
+                .then(() -> result.tryEmitValue(42))
+                .expectNext(42, 42, 42)
+                .verifyComplete();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(2, meterRegistry.get("cancun.singleflight.calls").tag("result", "hit").counter().count());
+        assertEquals(1, meterRegistry.get("cancun.singleflight.calls").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    public void when_callCompleted_then_nextCallGoesUpstream() {
+        final AtomicInteger upstreamCalls = new AtomicInteger();
+
+        StepVerifier.create(singleFlight.execute("key", () -> Mono.fromCallable(upstreamCalls::incrementAndGet)))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(singleFlight.execute("key", () -> Mono.fromCallable(upstreamCalls::incrementAndGet)))
+                .expectNext(2)
+                .verifyComplete();
+    }
+
+    @Test
+    public void when_keysDiffer_then_callsAreNotShared() {
+        final AtomicInteger upstreamCalls = new AtomicInteger();
+        final Sinks.One<Integer> result = Sinks.one();
+
+        final Flux<Integer> callers = Flux.merge(
+                singleFlight.execute("key1", () -> result.asMono()),
+                singleFlight.execute("key2", () -> Mono.fromCallable(upstreamCalls::incrementAndGet))
+        );
+
+        StepVerifier.create(callers)
+                .expectNext(1)
+                .then(() -> result.tryEmitValue(42))
+                .expectNext(42)
+                .verifyComplete();
+    }
+
+    @Test
+    public void when_upstreamFails_then_errorIsSharedAndKeyReleased() {
+        final Sinks.One<Integer> result = Sinks.one();
+
+        final Flux<Signal<Integer>> callers = Flux.merge(
+                singleFlight.execute("key", result::asMono).materialize(),
+                singleFlight.execute("key", () -> Mono.just(1)).materialize()
+        );
+
+        StepVerifier.create(callers)
+                .then(() -> result.tryEmitError(new IllegalStateException("failed")))
+                .expectNextMatches(signal -> signal.getThrowable() instanceof IllegalStateException)
+                .expectNextMatches(signal -> signal.getThrowable() instanceof IllegalStateException)
+                .verifyComplete();
+
+        StepVerifier.create(singleFlight.execute("key", () -> Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+    }
+}
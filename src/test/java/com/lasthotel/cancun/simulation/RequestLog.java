@@ -0,0 +1,123 @@
+package com.lasthotel.cancun.simulation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpMethod;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Request logs to replay, either read from a file or generated.
+ * <p>
+ * A log file holds one JSON object per line, in any order:
+ * <pre>
+ * {"at":"2021-07-06T00:00:01.250Z","method":"POST","path":"/reservation","body":{"user":"a","from":"2021-08-04","to":"2021-08-05"},"ref":"r1"}
+ * {"at":"2021-07-06T09:12:00Z","method":"DELETE","path":"/reservation/r1"}
+ * </pre>
+ */
+final class RequestLog {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RequestLog() {
+    }
+
+    static List<RequestLogEntry> read(Path file) {
+        final List<RequestLogEntry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                final JsonNode node = objectMapper.readTree(line);
+                entries.add(new RequestLogEntry(
+                        Instant.parse(node.get("at").asText()),
+                        HttpMethod.valueOf(node.get("method").asText()),
+                        node.get("path").asText(),
+                        node.hasNonNull("body") ? node.get("body").toString() : null,
+                        node.hasNonNull("ref") ? node.get("ref").asText() : null));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entries.sort(Comparator.comparing(RequestLogEntry::getAt));
+        return entries;
+    }
+
+    /**
+     * A day-by-day mix of reads and writes. At each midnight a share of the day's requests rushes to book the day
+     * that just opened, within the first seconds.
+     */
+    static List<RequestLogEntry> synthetic(LocalDate firstDay, int days, int requestsPerDay, double midnightShare,
+                                           Duration rushWindow, long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final ZoneId zone = ZoneId.systemDefault();
+        final int users = Math.max(1, requestsPerDay / 4);
+        final List<RequestLogEntry> entries = new ArrayList<>();
+        final List<String> refs = new ArrayList<>();
+
+        for (int day = 0; day < days; day++) {
+            final LocalDate today = firstDay.plusDays(day);
+            final Instant midnight = today.atStartOfDay(zone).toInstant();
+            final long dayMillis = Duration.between(midnight, today.plusDays(1).atStartOfDay(zone).toInstant()).toMillis();
+            final int rush = (int) (requestsPerDay * midnightShare);
+
+            for (int i = 0; i < rush; i++) {
+                final LocalDate opened = today.plusDays(30);
+                final Instant at = midnight.plusMillis(random.nextLong(Math.max(1, rushWindow.toMillis())));
+                entries.add(booking(at, "guest" + random.nextInt(users), opened.minusDays(random.nextInt(3)), opened, refs));
+            }
+
+            final List<Long> offsets = new ArrayList<>();
+            for (int i = rush; i < requestsPerDay; i++) {
+                offsets.add(random.nextLong(dayMillis));
+            }
+            offsets.sort(Comparator.naturalOrder());
+            for (long offset : offsets) {
+                final Instant at = midnight.plusMillis(offset);
+                final String user = "guest" + random.nextInt(users);
+                final LocalDate from = today.plusDays(1 + random.nextInt(28));
+                final LocalDate to = from.plusDays(random.nextInt(3));
+                final String ref = refs.isEmpty() ? null : refs.get(random.nextInt(refs.size()));
+                final int roll = random.nextInt(100);
+                if (roll < 40) {
+                    entries.add(new RequestLogEntry(at, HttpMethod.GET, "/reservation?from=" + from + "&to=" + to, null, null));
+                } else if (roll < 55) {
+                    entries.add(new RequestLogEntry(at, HttpMethod.GET, "/reservation/all", null, null));
+                } else if (roll < 65) {
+                    entries.add(new RequestLogEntry(at, HttpMethod.GET, "/reservation/user/" + user, null, null));
+                } else if (roll < 85 || ref == null) {
+                    entries.add(booking(at, user, from, to, refs));
+                } else if (roll < 95) {
+                    entries.add(new RequestLogEntry(at, HttpMethod.PUT, "/reservation/" + ref, body(user, from, to), null));
+                } else {
+                    entries.add(new RequestLogEntry(at, HttpMethod.DELETE, "/reservation/" + ref, null, null));
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(RequestLogEntry::getAt));
+        return entries;
+    }
+
+    private static RequestLogEntry booking(Instant at, String user, LocalDate from, LocalDate to, List<String> refs) {
+        final String ref = "r" + refs.size();
+        refs.add(ref);
+        return new RequestLogEntry(at, HttpMethod.POST, "/reservation", body(user, from, to), ref);
+    }
+
+    private static String body(String user, LocalDate from, LocalDate to) {
+        return "{\"user\":\"" + user + "\",\"from\":\"" + from + "\",\"to\":\"" + to + "\"}";
+    }
+}
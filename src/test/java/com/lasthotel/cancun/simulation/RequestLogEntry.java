@@ -0,0 +1,60 @@
+package com.lasthotel.cancun.simulation;
+
+import org.springframework.http.HttpMethod;
+
+import java.time.Instant;
+
+/**
+ * One request of a replayed log. {@code ref} names the reservation a create produced, so that later updates and
+ * deletes written as {@code /reservation/<ref>} reach the reservation created during the replay.
+ */
+class RequestLogEntry {
+    private final Instant at;
+    private final HttpMethod method;
+    private final String path;
+    private final String body;
+    private final String ref;
+
+    RequestLogEntry(Instant at, HttpMethod method, String path, String body, String ref) {
+        this.at = at;
+        this.method = method;
+        this.path = path;
+        this.body = body;
+        this.ref = ref;
+    }
+
+    Instant getAt() {
+        return at;
+    }
+
+    HttpMethod getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    String getBody() {
+        return body;
+    }
+
+    String getRef() {
+        return ref;
+    }
+
+    boolean isBooking() {
+        return method == HttpMethod.POST && path.equals("/reservation")
+                || method == HttpMethod.PUT && path.startsWith("/reservation/");
+    }
+
+    @Override
+    public String toString() {
+        return "RequestLogEntry{" +
+                "at=" + at +
+                ", method=" + method +
+                ", path='" + path + '\'' +
+                ", ref='" + ref + '\'' +
+                '}';
+    }
+}
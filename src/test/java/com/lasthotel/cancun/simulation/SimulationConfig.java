@@ -0,0 +1,24 @@
+package com.lasthotel.cancun.simulation;
+
+import com.lasthotel.cancun.AppConfigTest;
+import com.lasthotel.cancun.MutableClock;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.time.ZoneId;
+
+/**
+ * Replaces the fixed test clock with one the replay moves forward, so that days go by in seconds.
+ */
+@Profile("simulation")
+@Configuration
+public class SimulationConfig {
+
+    @Bean
+    @Primary
+    public MutableClock simulationClock() {
+        return new MutableClock(AppConfigTest.LOCAL_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    }
+}
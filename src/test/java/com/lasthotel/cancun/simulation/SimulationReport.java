@@ -0,0 +1,163 @@
+package com.lasthotel.cancun.simulation;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Per-bucket curves of a replay. Buckets are slices of simulated time, while latency, lag and throughput are
+ * measured in real time.
+ */
+class SimulationReport {
+    private static final String HEADER = "bucket,requests,throughput_rps,p50_ms,p99_ms,max_ms,max_lag_ms,bookings,booked,success_rate,shed";
+
+    private final Instant start;
+    private final Duration bucketSize;
+    private final Map<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+    SimulationReport(Instant start, Duration bucketSize) {
+        this.start = start;
+        this.bucketSize = bucketSize;
+    }
+
+    /**
+     * @param status HTTP status, or 0 when no response came back
+     */
+    void record(RequestLogEntry entry, int status, long sentNanos, long latencyNanos, long lagNanos) {
+        final long index = Duration.between(start, entry.getAt()).toNanos() / bucketSize.toNanos();
+        buckets.computeIfAbsent(index, key -> new Bucket())
+                .record(entry.isBooking(), status, sentNanos, latencyNanos, lagNanos);
+    }
+
+    long count(int status) {
+        return buckets.values().stream().mapToLong(bucket -> bucket.count(status)).sum();
+    }
+
+    /**
+     * Failed requests, leaving out 503s, which are load shedding and measured by {@link #shedRate()}.
+     */
+    long countServerErrors() {
+        return buckets.values().stream().mapToLong(Bucket::countServerErrors).sum();
+    }
+
+    /**
+     * Share of the requests answered with 503 by a full bulkhead or drop window.
+     */
+    double shedRate() {
+        final long requests = buckets.values().stream().mapToLong(Bucket::countRequests).sum();
+        return requests == 0 ? 0 : (double) count(503) / requests;
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-16s %8s %9s %8s %8s %8s %8s %8s %8s %8s %6s%n",
+                "bucket", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "lag ms", "bookings", "booked", "success", "shed");
+        for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+            final Bucket bucket = entry.getValue();
+            synchronized (bucket) {
+                out.printf(Locale.ROOT, "%-16s %8d %9.1f %8.1f %8.1f %8.1f %8.1f %8d %8d %7.1f%% %6d%n",
+                        label(entry.getKey()), bucket.latencies.size(), bucket.throughput(), bucket.percentile(0.5),
+                        bucket.percentile(0.99), bucket.percentile(1), bucket.maxLagNanos / 1e6, bucket.bookings,
+                        bucket.booked, bucket.successRate() * 100, bucket.count(503));
+            }
+        }
+    }
+
+    void write(Path file) {
+        final List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+            final Bucket bucket = entry.getValue();
+            synchronized (bucket) {
+                lines.add(String.format(Locale.ROOT, "%s,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%d,%d,%.4f,%d",
+                        label(entry.getKey()), bucket.latencies.size(), bucket.throughput(), bucket.percentile(0.5),
+                        bucket.percentile(0.99), bucket.percentile(1), bucket.maxLagNanos / 1e6, bucket.bookings,
+                        bucket.booked, bucket.successRate(), bucket.count(503)));
+            }
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String label(long index) {
+        return LocalDateTime.ofInstant(start.plus(bucketSize.multipliedBy(index)), ZoneId.systemDefault())
+                .toString()
+                .replace('T', ' ');
+    }
+
+    private static final class Bucket {
+        private final List<Long> latencies = new ArrayList<>();
+        private final Map<Integer, Long> statuses = new HashMap<>();
+        private long firstSentNanos = Long.MAX_VALUE;
+        private long lastDoneNanos = Long.MIN_VALUE;
+        private long maxLagNanos;
+        private long bookings;
+        private long booked;
+
+        private synchronized void record(boolean booking, int status, long sentNanos, long latencyNanos, long lagNanos) {
+            latencies.add(latencyNanos);
+            statuses.merge(status, 1L, Long::sum);
+            firstSentNanos = Math.min(firstSentNanos, sentNanos);
+            lastDoneNanos = Math.max(lastDoneNanos, sentNanos + latencyNanos);
+            maxLagNanos = Math.max(maxLagNanos, lagNanos);
+            if (booking) {
+                bookings++;
+                if (status == 200) {
+                    booked++;
+                }
+            }
+        }
+
+        private synchronized long countRequests() {
+            return latencies.size();
+        }
+
+        private synchronized long count(int status) {
+            return statuses.getOrDefault(status, 0L);
+        }
+
+        private synchronized long countServerErrors() {
+            return statuses.entrySet().stream()
+                    .filter(entry -> entry.getKey() == 0 || entry.getKey() >= 500 && entry.getKey() != 503)
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+        }
+
+        private double throughput() {
+            final long elapsed = lastDoneNanos - firstSentNanos;
+            return elapsed <= 0 ? 0 : latencies.size() / (elapsed / 1e9);
+        }
+
+        private double successRate() {
+            return bookings == 0 ? 1 : (double) booked / bookings;
+        }
+
+        private double percentile(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            final List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            final int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+            return sorted.get(Math.max(0, index)) / 1e6;
+        }
+    }
+}
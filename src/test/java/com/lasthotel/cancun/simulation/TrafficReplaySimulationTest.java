@@ -0,0 +1,201 @@
+package com.lasthotel.cancun.simulation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lasthotel.cancun.AppConfigTest;
+import com.lasthotel.cancun.MutableClock;
+import com.lasthotel.cancun.dropmode.DropModeProperties;
+import com.lasthotel.cancun.models.Reservation;
+import com.lasthotel.cancun.repositories.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays a request log through the REST API at many times real speed, with the application clock following the
+ * log, so that weeks of traffic and their midnight openings go by in minutes against embedded Mongo. Drop mode is
+ * on. Prints throughput, latency and booking success per slice of simulated time, and writes them as CSV.
+ * <p>
+ * The drop windows after each midnight are replayed at real speed. The gate timer, bulkhead waits and timeouts run
+ * on the wall clock, so speeding those seconds up would shed bookings that a real opening would not.
+ * <p>
+ * Run with {@code gradlew simulate}. Without {@code simulation.log} a synthetic log is generated. Other system
+ * properties: {@code simulation.speed}, {@code simulation.days}, {@code simulation.rate} (requests per day),
+ * {@code simulation.seed}, {@code simulation.bucket}, {@code simulation.concurrency}, {@code simulation.report} and
+ * {@code simulation.max-shed-rate} (share of requests that may be answered with 503).
+ */
+@Tag("simulation")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"test", "simulation"})
+@ContextConfiguration(classes = AppConfigTest.class)
+public class TrafficReplaySimulationTest {
+    private static final String LOG = System.getProperty("simulation.log");
+    private static final long SPEED = Long.getLong("simulation.speed", 14_400);
+    private static final int DAYS = Integer.getInteger("simulation.days", 14);
+    private static final int RATE = Integer.getInteger("simulation.rate", 2_000);
+    private static final long SEED = Long.getLong("simulation.seed", System.nanoTime());
+    private static final Duration BUCKET = Duration.parse(System.getProperty("simulation.bucket", "PT6H"));
+    private static final int CONCURRENCY = Integer.getInteger("simulation.concurrency", 256);
+    private static final Path REPORT = Path.of(System.getProperty("simulation.report", "build/simulation-report.csv"));
+    private static final double MAX_SHED_RATE = Double.parseDouble(System.getProperty("simulation.max-shed-rate", "0.01"));
+    private static final double MIDNIGHT_SHARE = 0.1;
+    private static final Duration RUSH_WINDOW = Duration.ofSeconds(2);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> idsByRef = new ConcurrentHashMap<>();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MutableClock clock;
+
+    @Autowired
+    private ReservationRepository repository;
+
+    @Autowired
+    private DropModeProperties dropMode;
+
+    private WebClient webClient;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll().block();
+        webClient = WebClient.create("http://localhost:" + port);
+    }
+
+    @Test
+    public void when_trafficIsReplayed_then_invariantsHoldAcrossMidnights() {
+        final List<RequestLogEntry> entries = LOG != null
+                ? RequestLog.read(Path.of(LOG))
+                : RequestLog.synthetic(AppConfigTest.LOCAL_DATE, DAYS, RATE, MIDNIGHT_SHARE, RUSH_WINDOW, SEED);
+        final Instant simulatedStart = entries.get(0).getAt().atZone(ZoneId.systemDefault())
+                .toLocalDate()
+                .atStartOfDay(ZoneId.systemDefault())
+                .toInstant();
+        final SimulationReport report = new SimulationReport(simulatedStart, BUCKET);
+
+        clock.setInstant(simulatedStart);
+        final long realStart = System.nanoTime();
+        Flux.fromIterable(entries)
+                .concatMap(entry -> {
+                    final long wait = due(entry, simulatedStart, realStart) - System.nanoTime();
+                    return wait > 0 ? Mono.delay(Duration.ofNanos(wait)).thenReturn(entry) : Mono.just(entry);
+                })
+                .doOnNext(entry -> clock.setInstant(entry.getAt()))
+                .flatMap(entry -> send(entry, due(entry, simulatedStart, realStart), report), CONCURRENCY)
+                .blockLast();
+        final double seconds = (System.nanoTime() - realStart) / 1e9;
+        final Duration simulated = Duration.between(simulatedStart, entries.get(entries.size() - 1).getAt());
+
+        final List<String> overlaps = findOverlaps();
+        System.out.printf("%nReplay: %d requests over %s of simulated time in %.1f s (%.0fx, target %dx), seed=%d%n",
+                entries.size(), simulated, seconds, simulated.toMillis() / 1000.0 / seconds, SPEED, SEED);
+        report.print(System.out);
+        report.write(REPORT);
+        System.out.printf(Locale.ROOT, "  double bookings %d, server errors %d, shed %.2f%% (max %.2f%%), report in %s%n",
+                overlaps.size(), report.countServerErrors(), report.shedRate() * 100, MAX_SHED_RATE * 100,
+                REPORT.toAbsolutePath());
+
+        assertEquals(List.of(), overlaps, "Double bookings, seed " + SEED);
+        assertEquals(0, report.countServerErrors(), "Server errors, seed " + SEED);
+        assertTrue(report.shedRate() <= MAX_SHED_RATE, "Shed rate " + report.shedRate() + ", seed " + SEED);
+    }
+
+    private Mono<Void> send(RequestLogEntry entry, long due, SimulationReport report) {
+        final long sent = System.nanoTime();
+        final WebClient.RequestBodySpec request = webClient.method(entry.getMethod()).uri(resolve(entry));
+        final WebClient.RequestHeadersSpec<?> exchange = entry.getBody() == null
+                ? request
+                : request.contentType(MediaType.APPLICATION_JSON).bodyValue(entry.getBody());
+
+        return exchange.exchangeToMono(response -> response.bodyToMono(String.class)
+                        .defaultIfEmpty("")
+                        .doOnNext(body -> remember(entry, response.rawStatusCode(), body))
+                        .thenReturn(response.rawStatusCode()))
+                .onErrorReturn(0)
+                .doOnNext(status -> report.record(entry, status, sent, System.nanoTime() - sent, Math.max(0, sent - due)))
+                .then();
+    }
+
+    private String resolve(RequestLogEntry entry) {
+        if (entry.getMethod() != HttpMethod.PUT && entry.getMethod() != HttpMethod.DELETE) {
+            return entry.getPath();
+        }
+
+        final int slash = entry.getPath().lastIndexOf('/');
+        final String id = idsByRef.get(entry.getPath().substring(slash + 1));
+        return id == null ? entry.getPath() : entry.getPath().substring(0, slash + 1) + id;
+    }
+
+    private void remember(RequestLogEntry entry, int status, String body) {
+        if (entry.getRef() == null || status != 200) {
+            return;
+        }
+
+        try {
+            final JsonNode id = objectMapper.readTree(body).get("id");
+            if (id != null && !id.isNull()) {
+                idsByRef.put(entry.getRef(), id.asText());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected reservation " + body, e);
+        }
+    }
+
+    private List<String> findOverlaps() {
+        final List<Reservation> reservations = repository.findAll()
+                .collectSortedList(Comparator.comparing(Reservation::getFrom))
+                .block();
+        final List<String> overlaps = new ArrayList<>();
+        for (int i = 1; i < reservations.size(); i++) {
+            final Reservation previous = reservations.get(i - 1);
+            final Reservation current = reservations.get(i);
+            if (!current.getFrom().isAfter(previous.getTo())) {
+                overlaps.add(previous + " / " + current);
+            }
+        }
+        return overlaps;
+    }
+
+    private long due(RequestLogEntry entry, Instant simulatedStart, long realStart) {
+        final Duration window = dropMode.isEnabled() ? dropMode.getWindow() : Duration.ZERO;
+        long offset = Duration.between(simulatedStart, entry.getAt()).toNanos() / SPEED;
+        for (LocalDate day = simulatedStart.atZone(ZoneId.systemDefault()).toLocalDate(); ; day = day.plusDays(1)) {
+            final Instant midnight = day.atStartOfDay(ZoneId.systemDefault()).toInstant();
+            if (!midnight.isBefore(entry.getAt())) {
+                return realStart + offset;
+            }
+            final Instant windowEnd = midnight.plus(window);
+            final long inWindow = Duration.between(midnight, entry.getAt().isBefore(windowEnd) ? entry.getAt() : windowEnd).toNanos();
+            // Time inside the window goes by at real speed
+            offset += inWindow - inWindow / SPEED;
+        }
+    }
+}
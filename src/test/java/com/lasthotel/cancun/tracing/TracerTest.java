@@ -0,0 +1,90 @@
+package com.lasthotel.cancun.tracing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TracerTest {
+    private final List<Span> exported = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean exporterClosed = new AtomicBoolean();
+    private final Tracer tracer = new Tracer(new TracingProperties(), new SpanExporter() {
+        @Override
+        public void export(List<Span> spans) {
+            exported.addAll(spans);
+        }
+
+        @Override
+        public void close() {
+            exporterClosed.set(true);
+        }
+    }, new SimpleMeterRegistry());
+
+    @AfterEach
+    public void closeTracer() {
+        tracer.close();
+    }
+
+    @Test
+    public void when_noSpanInContext_then_publisherIsNotTraced() {
+        StepVerifier.create(tracer.trace("service", Span.Kind.INTERNAL, Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertFalse(tracer.isExportStarted());
+        tracer.close();
+        assertTrue(exported.isEmpty());
+    }
+
+    @Test
+    public void when_spanInContext_then_nestedCallsBecomeChildSpans() {
+        final Span root = Span.root("GET /reservation", Span.Kind.SERVER);
+        final Flux<Integer> repositoryCall = tracer.trace("mongo.find", Span.Kind.CLIENT, Flux.just(1, 2));
+        final Mono<List<Integer>> serviceCall = tracer.trace("service", Span.Kind.INTERNAL, repositoryCall.collectList());
+
+        StepVerifier.create(serviceCall.contextWrite(context -> context.put(Tracer.CONTEXT_KEY, root)))
+                .expectNext(List.of(1, 2))
+                .verifyComplete();
+        tracer.finish(root, SignalType.ON_COMPLETE);
+        assertTrue(tracer.isExportStarted());
+
+        tracer.close();
+        assertTrue(exporterClosed.get());
+        assertEquals(3, exported.size());
+        final Span repositorySpan = exportedSpan("mongo.find");
+        final Span serviceSpan = exportedSpan("service");
+        assertEquals(serviceSpan.getSpanId(), repositorySpan.getParentSpanId());
+        assertEquals(root.getSpanId(), serviceSpan.getParentSpanId());
+        assertEquals(root.getTraceId(), repositorySpan.getTraceId());
+    }
+
+    @Test
+    public void when_tracedPublisherFails_then_spanRecordsError() {
+        final Span root = Span.root("GET /reservation", Span.Kind.SERVER);
+        final Mono<Integer> failing = tracer.trace("service", Span.Kind.INTERNAL, Mono.error(new IllegalStateException("failed")));
+
+        StepVerifier.create(failing.contextWrite(context -> context.put(Tracer.CONTEXT_KEY, root)))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        tracer.close();
+        assertEquals(1, exported.size());
+        assertNotNull(exported.get(0).getError());
+    }
+
+    private Span exportedSpan(String name) {
+        return exported.stream().filter(span -> span.getName().equals(name)).findFirst().orElseThrow();
+    }
+}
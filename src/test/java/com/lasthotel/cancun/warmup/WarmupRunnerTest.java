@@ -0,0 +1,78 @@
+package com.lasthotel.cancun.warmup;
+
+import com.lasthotel.cancun.AppConfigTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.WebFilter;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"cancun.warmup.rounds=2", "cancun.warmup.concurrency=2"})
+@ActiveProfiles({"test", "warmup"})
+@ContextConfiguration(classes = AppConfigTest.class)
+public class WarmupRunnerTest {
+    private static final List<ReadinessState> statesSeenByWarmup = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    private ApplicationAvailability availability;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void when_applicationStarts_then_readinessWaitsForWarmup() {
+        assertFalse(statesSeenByWarmup.isEmpty());
+        assertEquals(Set.of(ReadinessState.REFUSING_TRAFFIC), Set.copyOf(statesSeenByWarmup));
+        assertEquals(ReadinessState.ACCEPTING_TRAFFIC, availability.getReadinessState());
+
+        assertTrue(meterRegistry.get("cancun.warmup.duration").gauge().value() > 0);
+        assertTrue(meterRegistry.get("cancun.warmup.latency").tag("round", "first").gauge().value() > 0);
+        assertTrue(meterRegistry.get("cancun.warmup.latency").tag("round", "last").gauge().value() > 0);
+    }
+
+    /**
+     * The runner is left out of the test profile, so it is registered here, along with a filter that records the
+     * readiness state each warm-up request was served under.
+     */
+    @Profile("warmup")
+    @Configuration
+    @EnableConfigurationProperties(WarmupProperties.class)
+    public static class WarmupTestConfig {
+
+        @Bean
+        public WarmupRunner warmupRunner(WarmupProperties properties, WebClient.Builder webClientBuilder,
+                                         ReactiveMongoTemplate mongoTemplate, Environment environment, Clock clock,
+                                         MeterRegistry meterRegistry) {
+            return new WarmupRunner(properties, webClientBuilder, mongoTemplate, environment, clock, meterRegistry);
+        }
+
+        @Bean
+        public WebFilter readinessRecorder(ApplicationAvailability availability) {
+            return (exchange, chain) -> {
+                statesSeenByWarmup.add(availability.getReadinessState());
+                return chain.filter(exchange);
+            };
+        }
+    }
+}